@@ -0,0 +1,92 @@
+package io.polyglotted.common.es.rest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class CannedHttpServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final byte[] bulkResponse;
+    private final byte[] searchResponse;
+    private final byte[] scrollResponse;
+    private final byte[] getResponse;
+    private final byte[] indexMetaResponse;
+
+    CannedHttpServer(int bulkItems, int hits, int indices) throws IOException {
+        this.bulkResponse = bytes(bulkResponse(bulkItems));
+        this.searchResponse = bytes(searchResponse(hits, null));
+        this.scrollResponse = bytes(searchResponse(hits, "c2Nyb2xsLWlk"));
+        this.getResponse = bytes("{\"_index\":\"idx\",\"_type\":\"doc\",\"_id\":\"1\",\"_version\":1,\"found\":true,\"_source\":" + source(1) + "}");
+        this.indexMetaResponse = bytes(indexMetaResponse(indices));
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    int port() { return server.getAddress().getPort(); }
+
+    @Override public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) { while (body.read() >= 0) { } }
+        String path = exchange.getRequestURI().getPath();
+        byte[] response = path.endsWith("/_bulk") ? bulkResponse : path.endsWith("/_search/scroll") ? scrollResponse :
+            path.endsWith("/_search") ? searchResponse : path.startsWith("/idx/doc/") ? getResponse : indexMetaResponse;
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) { out.write(response); }
+    }
+
+    private static String bulkResponse(int items) {
+        StringBuilder builder = new StringBuilder("{\"took\":3,\"errors\":false,\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) { builder.append(','); }
+            builder.append("{\"index\":{\"_index\":\"idx\",\"_type\":\"doc\",\"_id\":\"").append(i).append("\",\"_version\":1,\"result\":\"created\",")
+                .append("\"_shards\":{\"total\":2,\"successful\":1,\"failed\":0},\"created\":true,\"status\":201}}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static String searchResponse(int hits, String scrollId) {
+        StringBuilder builder = new StringBuilder("{");
+        if (scrollId != null) { builder.append("\"_scroll_id\":\"").append(scrollId).append("\","); }
+        builder.append("\"took\":2,\"timed_out\":false,\"_shards\":{\"total\":5,\"successful\":5,\"skipped\":0,\"failed\":0},")
+            .append("\"hits\":{\"total\":").append(hits * 10).append(",\"max_score\":1.0,\"hits\":[");
+        for (int i = 0; i < hits; i++) {
+            if (i > 0) { builder.append(','); }
+            builder.append("{\"_index\":\"idx\",\"_type\":\"doc\",\"_id\":\"").append(i).append("\",\"_score\":1.0,\"_source\":").append(source(i)).append('}');
+        }
+        return builder.append("]}}").toString();
+    }
+
+    private static String indexMetaResponse(int indices) {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < indices; i++) {
+            if (i > 0) { builder.append(','); }
+            builder.append("\"idx-").append(i).append("\":{\"aliases\":{\"alias-").append(i).append("\":{}},")
+                .append("\"mappings\":{\"doc\":{\"properties\":{\"name\":{\"type\":\"keyword\"},\"count\":{\"type\":\"long\"},")
+                .append("\"body\":{\"type\":\"text\"}}}},\"settings\":{\"index\":{\"number_of_shards\":\"5\",\"number_of_replicas\":\"1\",")
+                .append("\"uuid\":\"uuid-").append(i).append("\",\"version\":{\"created\":\"5061699\"}}}}");
+        }
+        return builder.append('}').toString();
+    }
+
+    static String source(int i) {
+        return "{\"name\":\"name-" + i + "\",\"count\":" + i + ",\"body\":\"the quick brown fox jumps over the lazy dog " + i + "\"}";
+    }
+
+    private static byte[] bytes(String value) { return value.getBytes(StandardCharsets.UTF_8); }
+}
@@ -0,0 +1,71 @@
+package io.polyglotted.common.es.rest;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.common.xcontent.XContentType.JSON;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EsRestClientBenchmark {
+    @Param({"100"}) int bulkItems;
+    @Param({"100"}) int hits;
+    @Param({"1000"}) int indices;
+    @Param({"false", "true"}) boolean compressed;
+
+    private CannedHttpServer server;
+    private EsRestClient client;
+    private BulkRequest bulkRequest;
+
+    @Setup public void setup() throws Exception {
+        server = new CannedHttpServer(bulkItems, hits, indices);
+        EsRestClient.Builder builder = EsRestClient.builder(RestClient.builder(new HttpHost("127.0.0.1", server.port())).build());
+        client = (compressed ? builder.compression(1024) : builder).build();
+        bulkRequest = new BulkRequest();
+        for (int i = 0; i < bulkItems; i++) { bulkRequest.add(new IndexRequest("idx", "doc", String.valueOf(i)).source(CannedHttpServer.source(i), JSON)); }
+    }
+
+    @TearDown public void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark public BulkResponse bulk() { return client.bulk(bulkRequest); }
+
+    @Benchmark public SearchResponse search() { return client.search(new SearchRequest("idx")); }
+
+    @Benchmark public GetResponse get() { return client.get(new GetRequest("idx", "doc", "1")); }
+
+    @Benchmark public SearchResponse scrollPage() {
+        return client.searchScroll(new SearchScrollRequest("c2Nyb2xsLWlk").scroll(TimeValue.timeValueMinutes(1)));
+    }
+
+    @Benchmark public String getIndexMeta() { return client.getIndexMeta("idx-*"); }
+}
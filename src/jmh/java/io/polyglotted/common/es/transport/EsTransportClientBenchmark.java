@@ -0,0 +1,94 @@
+package io.polyglotted.common.es.transport;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.common.xcontent.XContentType.JSON;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EsTransportClientBenchmark {
+    @Param({"100"}) int bulkItems;
+    @Param({"100"}) int hits;
+    @Param({"1000"}) int indices;
+
+    private BulkRequest bulkRequest;
+    private BytesReference searchResponseBytes;
+    private MetaData metaData;
+
+    @Setup public void setup() throws IOException {
+        bulkRequest = new BulkRequest();
+        for (int i = 0; i < bulkItems; i++) { bulkRequest.add(new IndexRequest("idx", "doc", String.valueOf(i)).source(source(i), JSON)); }
+
+        SearchHit[] searchHits = new SearchHit[hits];
+        for (int i = 0; i < hits; i++) {
+            searchHits[i] = new SearchHit(i, String.valueOf(i), new Text("doc"), Collections.emptyMap()).sourceRef(new BytesArray(source(i)));
+        }
+        InternalSearchResponse sections = new InternalSearchResponse(new SearchHits(searchHits, hits * 10, 1.0f), null, null, null, false, null, 1);
+        BytesStreamOutput output = new BytesStreamOutput();
+        new SearchResponse(sections, null, 5, 5, 0, 2, ShardSearchFailure.EMPTY_ARRAY).writeTo(output);
+        searchResponseBytes = output.bytes();
+
+        MetaData.Builder builder = MetaData.builder();
+        for (int i = 0; i < indices; i++) {
+            builder.put(IndexMetaData.builder("idx-" + i)
+                .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT))
+                .numberOfShards(5).numberOfReplicas(1)
+                .putMapping("doc", "{\"doc\":{\"properties\":{\"name\":{\"type\":\"keyword\"},\"count\":{\"type\":\"long\"},\"body\":{\"type\":\"text\"}}}}")
+                .putAlias(AliasMetaData.builder("alias-" + i)));
+        }
+        metaData = builder.build();
+    }
+
+    @Benchmark public BytesReference bulkSerialisation() throws IOException {
+        BytesStreamOutput output = new BytesStreamOutput();
+        bulkRequest.writeTo(output);
+        return output.bytes();
+    }
+
+    @Benchmark public SearchResponse searchResponseParsing() throws IOException {
+        SearchResponse response = new SearchResponse();
+        try (StreamInput input = searchResponseBytes.streamInput()) { response.readFrom(input); }
+        return response;
+    }
+
+    @Benchmark public String getIndexMetaBuilding() { return EsTransportClient.indexMetaJson(metaData); }
+
+    private static String source(int i) {
+        return "{\"name\":\"name-" + i + "\",\"count\":" + i + ",\"body\":\"the quick brown fox jumps over the lazy dog " + i + "\"}";
+    }
+}
@@ -0,0 +1,92 @@
+package io.polyglotted.common.aws;
+
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagement;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sqs.AmazonSQS;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkState;
+import static io.polyglotted.common.aws.AwsConfig.createS3Client;
+import static io.polyglotted.common.aws.AwsConfig.createSnsClient;
+import static io.polyglotted.common.aws.AwsConfig.createSqsClient;
+import static io.polyglotted.common.aws.AwsConfig.createSsmClient;
+import static io.polyglotted.common.aws.AwsConfig.s3EncryptionClient;
+
+/*
+ * every aws client owns a connection pool, so clients are built once per service and per (credentials, region,
+ * provider) and shared until the registry is closed. the shared registry is closed by a shutdown hook.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class AwsClients implements Closeable {
+    public static final String MAX_CONNECTIONS_PROPERTY = "aws.clients.max_connections";
+    private final Map<List<String>, Object> clients = new ConcurrentHashMap<>();
+    private final ClientConfiguration s3Config;
+    private final ClientConfiguration clientConfig;
+    private volatile boolean closed = false;
+
+    public AwsClients(int maxConnections) { this(maxConnections, maxConnections); }
+
+    public AwsClients(int s3MaxConnections, int maxConnections) { this(pooled(s3MaxConnections), pooled(maxConnections)); }
+
+    public AwsClients(ClientConfiguration s3Config, ClientConfiguration clientConfig) {
+        this.s3Config = new ClientConfiguration(s3Config);
+        this.clientConfig = new ClientConfiguration(clientConfig);
+    }
+
+    public static AwsClients shared() { return SharedHolder.INSTANCE; }
+
+    public AmazonS3 s3(AwsConfig config) { return client("s3", config, "", () -> createS3Client(config, s3Config)); }
+
+    public AmazonS3Encryption s3Encryption(AwsConfig config, String cmkId) {
+        return client("s3-kms", config, cmkId, () -> s3EncryptionClient(config, cmkId, s3Config));
+    }
+
+    public AmazonSQS sqs(AwsConfig config) { return client("sqs", config, "", () -> createSqsClient(config, clientConfig)); }
+
+    public AmazonSNS sns(AwsConfig config) { return client("sns", config, "", () -> createSnsClient(config, clientConfig)); }
+
+    public AWSSimpleSystemsManagement ssm(AwsConfig config) { return client("ssm", config, "", () -> createSsmClient(config, clientConfig)); }
+
+    public int size() { return clients.size(); }
+
+    @Override public synchronized void close() {
+        if (closed) { return; }
+        closed = true;
+        for (Object client : new ArrayList<>(clients.values())) {
+            try {
+                if (client instanceof AmazonWebServiceClient) { ((AmazonWebServiceClient) client).shutdown(); }
+            } catch (Exception ex) { log.warn("failed to shutdown aws client " + client.getClass().getSimpleName(), ex); }
+        }
+        clients.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T client(String service, AwsConfig config, String qualifier, Supplier<T> creator) {
+        checkState(!closed, "aws clients already closed");
+        return (T) clients.computeIfAbsent(Arrays.asList(service, qualifier, config.region(), config.provider(), config.accessKey(),
+            config.secretKey(), config.roleArn(), config.roleSessionName()), key -> creator.get());
+    }
+
+    private static ClientConfiguration pooled(int maxConnections) {
+        return new ClientConfiguration().withMaxConnections(maxConnections).withTcpKeepAlive(true).withConnectionTTL(300_000);
+    }
+
+    private static final class SharedHolder {
+        private static final AwsClients INSTANCE = new AwsClients(Integer.getInteger(MAX_CONNECTIONS_PROPERTY, 64));
+
+        static { Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::close, "aws-clients-shutdown")); }
+    }
+}
@@ -1,5 +1,6 @@
 package io.polyglotted.common.aws;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.regions.RegionUtils;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
@@ -40,38 +41,53 @@ public interface AwsConfig {
     @Attribute(name = "aws.role_session_name")
     default String roleSessionName() { return "defaultSession"; }
 
-    static AmazonS3 createS3Client(AwsConfig config) {
+    static AmazonS3 createS3Client(AwsConfig config) { return createS3Client(config, null); }
+
+    static AmazonS3 createS3Client(AwsConfig config, ClientConfiguration clientConfig) {
         return AmazonS3ClientBuilder.standard()
             .withCredentials(CredsProvider.getProvider(config))
+            .withClientConfiguration(clientConfig)
             .withRegion(Regions.fromName(config.region()))
             .build();
     }
 
-    static AmazonS3Encryption s3EncryptionClient(AwsConfig config, String cmkId) {
+    static AmazonS3Encryption s3EncryptionClient(AwsConfig config, String cmkId) { return s3EncryptionClient(config, cmkId, null); }
+
+    static AmazonS3Encryption s3EncryptionClient(AwsConfig config, String cmkId, ClientConfiguration clientConfig) {
         return AmazonS3EncryptionClient.encryptionBuilder()
             .withCredentials(CredsProvider.getProvider(config))
+            .withClientConfiguration(clientConfig)
             .withEncryptionMaterials(new KMSEncryptionMaterialsProvider(cmkId))
             .withCryptoConfiguration(new CryptoConfiguration().withAwsKmsRegion(RegionUtils.getRegion(config.region())))
             .withRegion(config.region()).build();
     }
 
-    static AmazonSQS createSqsClient(AwsConfig config) {
+    static AmazonSQS createSqsClient(AwsConfig config) { return createSqsClient(config, null); }
+
+    static AmazonSQS createSqsClient(AwsConfig config, ClientConfiguration clientConfig) {
         return AmazonSQSClientBuilder.standard()
             .withCredentials(CredsProvider.getProvider(config))
+            .withClientConfiguration(clientConfig)
             .withRegion(Regions.fromName(config.region()))
             .build();
     }
 
-    static AmazonSNS createSnsClient(AwsConfig config) {
+    static AmazonSNS createSnsClient(AwsConfig config) { return createSnsClient(config, null); }
+
+    static AmazonSNS createSnsClient(AwsConfig config, ClientConfiguration clientConfig) {
         return AmazonSNSClientBuilder.standard()
             .withCredentials(CredsProvider.getProvider(config))
+            .withClientConfiguration(clientConfig)
             .withRegion(Regions.fromName(config.region()))
             .build();
     }
 
-    static AWSSimpleSystemsManagement createSsmClient(AwsConfig config) {
+    static AWSSimpleSystemsManagement createSsmClient(AwsConfig config) { return createSsmClient(config, null); }
+
+    static AWSSimpleSystemsManagement createSsmClient(AwsConfig config, ClientConfiguration clientConfig) {
         return AWSSimpleSystemsManagementClientBuilder.standard()
             .withCredentials(CredsProvider.getProvider(config))
+            .withClientConfiguration(clientConfig)
             .withRegion(Regions.fromName(config.region()))
             .build();
     }
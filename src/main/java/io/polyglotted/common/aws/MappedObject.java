@@ -0,0 +1,106 @@
+package io.polyglotted.common.aws;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.READ;
+
+/*
+ * read-only memory mapped view of a file, split into segments of at most 1GB by default as a single mapping cannot
+ * exceed 2GB. the mapping stays valid after the file is deleted, so the backing file can be unlinked straight away.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class MappedObject {
+    private static final int SEGMENT_BITS = 30;
+    private final List<ByteBuffer> segments;
+    private final long size;
+    private final int segmentBits;
+
+    private MappedObject(List<ByteBuffer> segments, long size, int segmentBits) {
+        this.segments = segments;
+        this.size = size;
+        this.segmentBits = segmentBits;
+    }
+
+    public static MappedObject map(Path file) throws IOException { return map(file, SEGMENT_BITS); }
+
+    public static MappedObject map(Path file, int segmentBits) throws IOException {
+        checkArgument(segmentBits > 0 && segmentBits <= SEGMENT_BITS, "segmentBits must be between 1 and %s", SEGMENT_BITS);
+        long segmentSize = 1L << segmentBits;
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long size = channel.size();
+            List<ByteBuffer> segments = new ArrayList<>();
+            for (long position = 0; position < size || segments.isEmpty(); position += segmentSize) {
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position)));
+            }
+            return new MappedObject(Collections.unmodifiableList(segments), size, segmentBits);
+        }
+    }
+
+    public long size() { return size; }
+
+    public ByteBuffer buffer() {
+        checkState(segments.size() == 1, "object of %s bytes spans %s segments", size, segments.size());
+        return segments.get(0).duplicate();
+    }
+
+    public List<ByteBuffer> segments() {
+        List<ByteBuffer> result = new ArrayList<>(segments.size());
+        for (ByteBuffer segment : segments) { result.add(segment.duplicate()); }
+        return result;
+    }
+
+    public byte get(long position) {
+        if (position < 0 || position >= size) { throw new IndexOutOfBoundsException("position " + position + " outside " + size); }
+        return segments.get((int) (position >>> segmentBits)).get((int) (position & ((1L << segmentBits) - 1)));
+    }
+
+    public InputStream inputStream() {
+        return new InputStream() {
+            private final List<ByteBuffer> buffers = segments();
+            private int index = 0;
+
+            @Override public int read() {
+                ByteBuffer current = current();
+                return current == null ? -1 : current.get() & 0xff;
+            }
+
+            @Override public int read(byte[] bytes, int off, int len) {
+                if (len == 0) { return 0; }
+                ByteBuffer current = current();
+                if (current == null) { return -1; }
+                int count = Math.min(len, current.remaining());
+                current.get(bytes, off, count);
+                return count;
+            }
+
+            @Override public long skip(long count) {
+                long skipped = 0;
+                for (ByteBuffer current; skipped < count && (current = current()) != null; ) {
+                    int step = (int) Math.min(count - skipped, current.remaining());
+                    current.position(current.position() + step);
+                    skipped += step;
+                }
+                return skipped;
+            }
+
+            @Override public int available() {
+                ByteBuffer current = current();
+                return current == null ? 0 : current.remaining();
+            }
+
+            private ByteBuffer current() {
+                while (index < buffers.size() && !buffers.get(index).hasRemaining()) { index++; }
+                return index < buffers.size() ? buffers.get(index) : null;
+            }
+        };
+    }
+}
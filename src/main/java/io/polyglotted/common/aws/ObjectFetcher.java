@@ -4,19 +4,26 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
-import static io.polyglotted.common.aws.AwsConfig.createS3Client;
-import static io.polyglotted.common.aws.AwsConfig.s3EncryptionClient;
 import static io.polyglotted.common.util.BaseSerializer.deserialize;
 import static io.polyglotted.common.util.MapRetriever.reqdStr;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 @SuppressWarnings({"unused", "WeakerAccess"})
 public abstract class ObjectFetcher {
+    private static final Cache<String, String> CMK_BY_PREFIX = CacheBuilder.newBuilder().maximumSize(10_000).expireAfterWrite(10, TimeUnit.MINUTES).build();
+
     public static ObjectMetadata fetchObjectMetadata(AwsConfig config, String bucket, String key) {
-        return createS3Client(config).getObjectMetadata(bucket, key);
+        return AwsClients.shared().s3(config).getObjectMetadata(bucket, key);
     }
 
     public static S3Object fetchObject(AmazonS3 client, GetObjectRequest request) { return client.getObject(request); }
@@ -24,20 +31,86 @@ public abstract class ObjectFetcher {
     public static InputStream fetchPartial(AwsConfig config, String bucket, String key, long[] range) {
         GetObjectRequest request = new GetObjectRequest(bucket, key);
         if (range != null) { request.setRange(range[0], range[1]); }
-        return fetchObject(createS3Client(config), request).getObjectContent();
+        return fetchObject(AwsClients.shared().s3(config), request).getObjectContent();
     }
 
+    /*
+     * a single get through the plain client: its user metadata tells whether the object is kms encrypted, in which
+     * case that stream is dropped and the object is read again through the encryption client. prefixes seen to hold
+     * encrypted objects go straight to the encryption client next time, so only the first object of a prefix costs
+     * a second get; a stale decision is harmless as both clients cope with either kind of object.
+     */
     public static InputStream fetchMayBeSecure(AwsConfig config, String bucket, String key) throws IOException {
-        return fetchMayBeSecure(config, bucket, key, fetchObjectMetadata(config, bucket, key));
+        String prefix = bucket + "/" + key.substring(0, key.lastIndexOf('/') + 1);
+        String knownCmkId = CMK_BY_PREFIX.getIfPresent(prefix);
+        if (knownCmkId != null && !knownCmkId.isEmpty()) {
+            return fetchObject(AwsClients.shared().s3Encryption(config, knownCmkId), new GetObjectRequest(bucket, key)).getObjectContent();
+        }
+        S3Object object = fetchObject(AwsClients.shared().s3(config), new GetObjectRequest(bucket, key));
+        try {
+            String cmkId = fetchCmkId(object.getObjectMetadata());
+            CMK_BY_PREFIX.put(prefix, cmkId == null ? "" : cmkId);
+            if (cmkId == null) { return object.getObjectContent(); }
+            object.getObjectContent().abort();
+            return fetchObject(AwsClients.shared().s3Encryption(config, cmkId), new GetObjectRequest(bucket, key)).getObjectContent();
+        } catch (IOException | RuntimeException ex) {
+            object.getObjectContent().abort();
+            throw ex;
+        }
     }
 
+    /*
+     * the get is pinned to the etag of the given metadata, so content and metadata always describe the same version.
+     */
     public static InputStream fetchMayBeSecure(AwsConfig config, String bucket, String key, ObjectMetadata metadata) throws IOException {
         String cmkId = fetchCmkId(metadata);
-        AmazonS3 client = (cmkId == null) ? createS3Client(config) : s3EncryptionClient(config, cmkId);
-        return fetchObject(client, new GetObjectRequest(bucket, key)).getObjectContent();
+        return fetchPinned((cmkId == null) ? AwsClients.shared().s3(config) : AwsClients.shared().s3Encryption(config, cmkId), bucket, key, metadata);
+    }
+
+    static InputStream fetchPinned(AmazonS3 client, String bucket, String key, ObjectMetadata metadata) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(bucket, key);
+        if (metadata.getETag() != null) { request.withMatchingETagConstraint(metadata.getETag()); }
+        S3Object object = fetchObject(client, request);
+        if (object == null) { throw new RangedDownloader.ObjectChangedException("s3://" + bucket + "/" + key + " changed since its metadata was read"); }
+        return object.getObjectContent();
+    }
+
+    public static InputStream fetchParallel(AwsConfig config, String bucket, String key, RangedDownloader downloader) throws IOException {
+        ObjectMetadata metadata = fetchObjectMetadata(config, bucket, key);
+        return fetchCmkId(metadata) == null ? downloader.open(AwsClients.shared().s3(config), bucket, key, metadata) :
+            fetchMayBeSecure(config, bucket, key, metadata);
+    }
+
+    public static long fetchParallel(AwsConfig config, String bucket, String key, FileChannel channel, RangedDownloader downloader) throws IOException {
+        return fetchInto(config, bucket, key, fetchObjectMetadata(config, bucket, key), channel, downloader);
+    }
+
+    public static MappedObject fetchMapped(AwsConfig config, String bucket, String key) throws IOException {
+        return fetchMapped(config, bucket, key, fetchObjectMetadata(config, bucket, key), null, null);
+    }
+
+    public static MappedObject fetchMapped(AwsConfig config, String bucket, String key, RangedDownloader downloader) throws IOException {
+        return fetchMapped(config, bucket, key, fetchObjectMetadata(config, bucket, key), downloader, null);
+    }
+
+    public static MappedObject fetchMapped(AwsConfig config, String bucket, String key, ObjectMetadata metadata,
+                                           RangedDownloader downloader, Path directory) throws IOException {
+        Path temp = directory == null ? Files.createTempFile("s3-", ".mapped") : Files.createTempFile(directory, "s3-", ".mapped");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, WRITE)) { fetchInto(config, bucket, key, metadata, channel, downloader); }
+            return MappedObject.map(temp);
+        } finally { Files.deleteIfExists(temp); }
+    }
+
+    static long fetchInto(AwsConfig config, String bucket, String key, ObjectMetadata metadata,
+                          FileChannel channel, RangedDownloader downloader) throws IOException {
+        if (downloader != null && fetchCmkId(metadata) == null) {
+            return downloader.download(AwsClients.shared().s3(config), bucket, key, metadata, channel);
+        }
+        try (InputStream in = fetchMayBeSecure(config, bucket, key, metadata)) { return RangedDownloader.copy(in, channel); }
     }
 
-    private static String fetchCmkId(ObjectMetadata metadata) throws IOException {
+    static String fetchCmkId(ObjectMetadata metadata) throws IOException {
         String matDesc = metadata.getUserMetaDataOf("x-amz-matdesc");
         return matDesc == null ? null : reqdStr(deserialize(matDesc), "kms_cmk_id");
     }
@@ -0,0 +1,225 @@
+package io.polyglotted.common.aws;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/*
+ * splits an object into fixed size ranges fetched concurrently on a bounded pool. every range is pinned to the
+ * etag read up front, so an object replaced mid-download fails instead of mixing versions. the in-order stream
+ * holds at most maxBufferedParts parts in memory; file downloads write each range at its offset through a small
+ * copy buffer. ranged gets only make sense on plain objects, client side encrypted ones stay single stream.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class RangedDownloader implements Closeable {
+    private static final int COPY_BUFFER = 64 * 1024;
+    private static final int MAX_ATTEMPTS = 3;
+    private final ExecutorService executor;
+    private final long partSize;
+    private final int maxBufferedParts;
+
+    public RangedDownloader() { this(8, 8 * 1024 * 1024, 16); }
+
+    public RangedDownloader(int parallelism, long partSize, int maxBufferedParts) {
+        checkArgument(parallelism > 0, "parallelism must be positive");
+        checkArgument(partSize >= COPY_BUFFER && partSize <= Integer.MAX_VALUE - 8, "partSize must be between 64KB and 2GB");
+        checkArgument(maxBufferedParts > 0, "maxBufferedParts must be positive");
+        this.partSize = partSize;
+        this.maxBufferedParts = maxBufferedParts;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "s3-ranged-download-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public InputStream open(AmazonS3 client, String bucket, String key) { return open(client, bucket, key, client.getObjectMetadata(bucket, key)); }
+
+    public InputStream open(AmazonS3 client, String bucket, String key, ObjectMetadata metadata) {
+        long length = metadata.getContentLength();
+        if (length <= partSize) { return client.getObject(bucket, key).getObjectContent(); }
+        return new PartsInputStream(client, bucket, key, metadata.getETag(), length);
+    }
+
+    public long download(AmazonS3 client, String bucket, String key, FileChannel channel) throws IOException {
+        return download(client, bucket, key, client.getObjectMetadata(bucket, key), channel);
+    }
+
+    public long download(AmazonS3 client, String bucket, String key, ObjectMetadata metadata, FileChannel channel) throws IOException {
+        long length = metadata.getContentLength();
+        AtomicBoolean aborted = new AtomicBoolean();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int index = 0; index < partCount(length); index++) {
+            long start = index * partSize, end = Math.min(length, start + partSize) - 1;
+            futures.add(executor.submit(() -> {
+                fetchRange(client, bucket, key, metadata.getETag(), start, end, aborted, (position, bytes, count) -> {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, count);
+                    for (long offset = position; buffer.hasRemaining(); ) { offset += channel.write(buffer, offset); }
+                });
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) { await(future, aborted, futures, bucket, key); }
+        return length;
+    }
+
+    public static long copy(InputStream in, FileChannel channel) throws IOException {
+        byte[] bytes = new byte[COPY_BUFFER];
+        long position = 0;
+        for (int read; (read = in.read(bytes)) >= 0; ) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+            while (buffer.hasRemaining()) { position += channel.write(buffer, position); }
+        }
+        return position;
+    }
+
+    @Override public void close() { executor.shutdownNow(); }
+
+    private int partCount(long length) { return (int) ((length + partSize - 1) / partSize); }
+
+    private static void fetchRange(AmazonS3 client, String bucket, String key, String eTag, long start, long end,
+                                   AtomicBoolean aborted, RangeSink sink) throws IOException {
+        long position = start;
+        for (int attempt = 1; ; attempt++) {
+            GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(position, end);
+            if (eTag != null) { request.withMatchingETagConstraint(eTag); }
+            try {
+                S3Object object = client.getObject(request);
+                if (object == null) { throw new ObjectChangedException("s3://" + bucket + "/" + key + " changed during download"); }
+                try (S3ObjectInputStream in = object.getObjectContent()) {
+                    byte[] buffer = new byte[COPY_BUFFER];
+                    for (int read; position <= end && (read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) >= 0; ) {
+                        if (aborted.get()) { in.abort(); return; }
+                        sink.write(position, buffer, read);
+                        position += read;
+                    }
+                }
+                if (position <= end) { throw new EOFException("s3://" + bucket + "/" + key + " ended at " + position + " expecting " + (end + 1)); }
+                return;
+            } catch (AmazonServiceException | ObjectChangedException ex) {
+                throw ex;
+            } catch (IOException | SdkClientException ex) {
+                if (attempt >= MAX_ATTEMPTS || aborted.get()) { throw ex; }
+                log.debug("retrying range {}-{} of s3://{}/{} after: {}", position, end, bucket, key, ex.getMessage());
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> future, AtomicBoolean aborted, Iterable<? extends Future<?>> all, String bucket, String key) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            abort(aborted, all);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("download of s3://" + bucket + "/" + key + " interrupted");
+        } catch (ExecutionException ee) {
+            abort(aborted, all);
+            Throwable cause = ee.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("download of s3://" + bucket + "/" + key + " failed", cause);
+        }
+    }
+
+    private static void abort(AtomicBoolean aborted, Iterable<? extends Future<?>> futures) {
+        aborted.set(true);
+        for (Future<?> future : futures) { if (future != null) { future.cancel(false); } }
+    }
+
+    private interface RangeSink {
+        void write(long position, byte[] bytes, int count) throws IOException;
+    }
+
+    static final class ObjectChangedException extends IOException {
+        ObjectChangedException(String message) { super(message); }
+    }
+
+    private final class PartsInputStream extends InputStream {
+        private final AtomicBoolean aborted = new AtomicBoolean();
+        private final AmazonS3 client;
+        private final String bucket;
+        private final String key;
+        private final String eTag;
+        private final long length;
+        private final List<Future<byte[]>> parts;
+        private int current = -1;
+        private byte[] buffer;
+        private int offset;
+
+        PartsInputStream(AmazonS3 client, String bucket, String key, String eTag, long length) {
+            this.client = client;
+            this.bucket = bucket;
+            this.key = key;
+            this.eTag = eTag;
+            this.length = length;
+            this.parts = new ArrayList<>();
+            for (int index = 0; index < partCount(length); index++) { parts.add(null); }
+            for (int index = 0; index < Math.min(parts.size(), maxBufferedParts); index++) { schedule(index); }
+        }
+
+        @Override public int read() throws IOException { return advance() ? buffer[offset++] & 0xff : -1; }
+
+        @Override public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) { return 0; }
+            if (!advance()) { return -1; }
+            int count = Math.min(len, buffer.length - offset);
+            System.arraycopy(buffer, offset, bytes, off, count);
+            offset += count;
+            return count;
+        }
+
+        @Override public int available() { return buffer == null ? 0 : buffer.length - offset; }
+
+        @Override public void close() {
+            if (aborted.get()) { return; }
+            abort(aborted, parts);
+            buffer = null;
+        }
+
+        private void schedule(int index) {
+            long start = index * partSize, end = Math.min(length, start + partSize) - 1;
+            parts.set(index, executor.submit(() -> {
+                byte[] bytes = new byte[(int) (end - start + 1)];
+                fetchRange(client, bucket, key, eTag, start, end, aborted, (position, chunk, count) ->
+                    System.arraycopy(chunk, 0, bytes, (int) (position - start), count));
+                return bytes;
+            }));
+        }
+
+        private boolean advance() throws IOException {
+            if (aborted.get()) { throw new IOException("stream closed"); }
+            if (buffer != null && offset < buffer.length) { return true; }
+            if (current >= 0) { parts.set(current, null); }
+            if (current + 1 >= parts.size()) { buffer = null; return false; }
+            current++;
+            int next = current + maxBufferedParts - 1;
+            if (current > 0 && next < parts.size()) { schedule(next); }
+            buffer = await(parts.get(current), aborted, parts, bucket, key);
+            offset = 0;
+            return true;
+        }
+    }
+}
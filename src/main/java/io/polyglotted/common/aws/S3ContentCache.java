@@ -0,0 +1,237 @@
+package io.polyglotted.common.aws;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.polyglotted.common.aws.ObjectFetcher.fetchCmkId;
+import static io.polyglotted.common.aws.ObjectFetcher.fetchInto;
+import static io.polyglotted.common.aws.ObjectFetcher.fetchPinned;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/*
+ * disk backed lru of s3 objects. files are named after a hash of the caller's principal and bucket/key plus the
+ * etag the content was fetched with, so the cache survives restarts, a changed object can never be served under
+ * its old etag and one principal is never served what only another one may read. within the ttl a hit costs
+ * nothing, after it one getObjectMetadata call revalidates the etag. kms decrypted content is only written to disk
+ * when cacheDecrypted is set, otherwise it is mapped from an already unlinked temp file. plain objects are read
+ * through the given s3 client source, kms encrypted ones through the shared encryption clients.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class S3ContentCache {
+    private static final String PLAIN = ".obj";
+    private static final String DECRYPTED = ".kms";
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Striped<Lock> locks = Striped.lock(64);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Function<AwsConfig, AmazonS3> s3;
+    private final Path directory;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final boolean cacheDecrypted;
+    private long totalBytes = 0;
+
+    public S3ContentCache(Path directory, long maxBytes, long ttl, TimeUnit unit, boolean cacheDecrypted) throws IOException {
+        this(AwsClients.shared()::s3, directory, maxBytes, ttl, unit, cacheDecrypted);
+    }
+
+    public S3ContentCache(Function<AwsConfig, AmazonS3> s3, Path directory, long maxBytes, long ttl, TimeUnit unit,
+                          boolean cacheDecrypted) throws IOException {
+        checkArgument(maxBytes > 0, "maxBytes must be positive");
+        this.s3 = s3;
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.cacheDecrypted = cacheDecrypted;
+        load();
+    }
+
+    public InputStream open(AwsConfig config, String bucket, String key) throws IOException { return fetch(config, bucket, key).inputStream(); }
+
+    public MappedObject fetch(AwsConfig config, String bucket, String key) throws IOException {
+        String id = id(config, bucket, key);
+        Lock lock = locks.get(id);
+        lock.lock();
+        try {
+            Entry entry = entry(id);
+            if (entry != null && System.currentTimeMillis() - entry.validatedAt < ttlMillis) {
+                MappedObject mapped = serve(id, entry);
+                if (mapped != null) { hits.increment(); return mapped; }
+                entry = null;
+            }
+            ObjectMetadata metadata = s3.apply(config).getObjectMetadata(bucket, key);
+            if (entry != null && entry.eTag.equals(sanitise(metadata.getETag()))) {
+                entry.validatedAt = System.currentTimeMillis();
+                MappedObject mapped = serve(id, entry);
+                if (mapped != null) { revalidations.increment(); return mapped; }
+            }
+            misses.increment();
+            try {
+                return download(config, bucket, key, id, metadata);
+            } catch (RangedDownloader.ObjectChangedException ex) {
+                log.debug("{}/{} changed while fetching, retrying with fresh metadata", bucket, key);
+                return download(config, bucket, key, id, s3.apply(config).getObjectMetadata(bucket, key));
+            }
+        } finally { lock.unlock(); }
+    }
+
+    public void invalidate(AwsConfig config, String bucket, String key) {
+        String id = id(config, bucket, key);
+        Lock lock = locks.get(id);
+        lock.lock();
+        try {
+            remove(id);
+        } finally { lock.unlock(); }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        synchronized (entries) {
+            result.put("entries", entries.size());
+            result.put("bytes", totalBytes);
+        }
+        result.put("hits", hits.sum());
+        result.put("revalidations", revalidations.sum());
+        result.put("misses", misses.sum());
+        return result;
+    }
+
+    private MappedObject download(AwsConfig config, String bucket, String key, String id, ObjectMetadata metadata) throws IOException {
+        boolean decrypted = fetchCmkId(metadata) != null;
+        Path temp = Files.createTempFile(directory, id, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, WRITE)) {
+                if (decrypted) { fetchInto(config, bucket, key, metadata, channel, null); }
+                else { try (InputStream in = fetchPinned(s3.apply(config), bucket, key, metadata)) { RangedDownloader.copy(in, channel); } }
+            }
+            long size = Files.size(temp);
+            if ((decrypted && !cacheDecrypted) || size > maxBytes) { return MappedObject.map(temp); }
+
+            String eTag = sanitise(metadata.getETag());
+            Path file = directory.resolve(id + "_" + eTag + (decrypted ? DECRYPTED : PLAIN));
+            remove(id);
+            Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            MappedObject mapped = MappedObject.map(file);
+            synchronized (entries) {
+                entries.put(id, new Entry(eTag, file, size, System.currentTimeMillis()));
+                totalBytes += size;
+            }
+            evict();
+            return mapped;
+        } finally { Files.deleteIfExists(temp); }
+    }
+
+    private MappedObject serve(String id, Entry entry) {
+        try {
+            Files.setLastModifiedTime(entry.file, FileTime.fromMillis(System.currentTimeMillis()));
+            return MappedObject.map(entry.file);
+        } catch (IOException ex) {
+            log.warn("dropping unreadable cache file {}: {}", entry.file, ex.getMessage());
+            remove(id);
+            return null;
+        }
+    }
+
+    private Entry entry(String id) { synchronized (entries) { return entries.get(id); } }
+
+    private void remove(String id) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(id);
+            if (entry != null) { totalBytes -= entry.size; }
+        }
+        if (entry != null) { delete(entry.file); }
+    }
+
+    private void evict() {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (entries) {
+            for (Iterator<Entry> it = entries.values().iterator(); totalBytes > maxBytes && it.hasNext(); ) {
+                Entry entry = it.next();
+                it.remove();
+                totalBytes -= entry.size;
+                evicted.add(entry.file);
+            }
+        }
+        for (Path file : evicted) { log.debug("evicting cache file {}", file); delete(file); }
+    }
+
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp") || (!cacheDecrypted && name.endsWith(DECRYPTED))) { delete(file); }
+                else if (name.indexOf('_') > 0 && (name.endsWith(PLAIN) || name.endsWith(DECRYPTED))) { files.add(file); }
+            }
+        }
+        files.sort((left, right) -> Long.compare(left.toFile().lastModified(), right.toFile().lastModified()));
+        synchronized (entries) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String id = name.substring(0, name.indexOf('_'));
+                String eTag = name.substring(name.indexOf('_') + 1, name.lastIndexOf('.'));
+                Entry previous = entries.put(id, new Entry(eTag, file, Files.size(file), 0));
+                totalBytes += Files.size(file);
+                if (previous != null) { totalBytes -= previous.size; delete(previous.file); }
+            }
+        }
+        evict();
+        log.info("loaded {} cached s3 objects ({} bytes) from {}", entries.size(), totalBytes, directory);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) { log.warn("failed to delete cache file {}: {}", file, ex.getMessage()); }
+    }
+
+    private static String id(AwsConfig config, String bucket, String key) {
+        return Hashing.sha256().hashString(String.join("\n", config.provider(), config.accessKey(), config.roleArn(), bucket + "/" + key), UTF_8).toString();
+    }
+
+    private static String sanitise(String eTag) {
+        String value = eTag == null ? "" : eTag.replace("\"", "");
+        return value.matches("[A-Za-z0-9-]{1,64}") ? value : Hashing.sha256().hashString(value, UTF_8).toString();
+    }
+
+    private static final class Entry {
+        private final String eTag;
+        private final Path file;
+        private final long size;
+        private volatile long validatedAt;
+
+        Entry(String eTag, Path file, long size, long validatedAt) {
+            this.eTag = eTag;
+            this.file = file;
+            this.size = size;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
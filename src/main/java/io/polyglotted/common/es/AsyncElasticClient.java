@@ -0,0 +1,53 @@
+package io.polyglotted.common.es;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+@SuppressWarnings("unused")
+public interface AsyncElasticClient {
+
+    CompletableFuture<Boolean> indexExists(String index);
+
+    CompletableFuture<Set<String>> getIndices(String alias);
+
+    CompletableFuture<Void> forceRefresh(String... indices);
+
+    CompletableFuture<Map<String, Object>> clusterHealth();
+
+    CompletableFuture<Map<String, Object>> waitForStatus(HealthWait wait);
+
+    CompletableFuture<IndexResponse> index(IndexRequest request);
+
+    CompletableFuture<UpdateResponse> update(UpdateRequest request);
+
+    CompletableFuture<DeleteResponse> delete(DeleteRequest request);
+
+    CompletableFuture<BulkResponse> bulk(BulkRequest request);
+
+    CompletableFuture<GetResponse> get(GetRequest request);
+
+    CompletableFuture<MultiGetResponse> multiGet(MultiGetRequest request);
+
+    CompletableFuture<SearchResponse> search(SearchRequest request);
+
+    CompletableFuture<MultiSearchResponse> multiSearch(MultiSearchRequest request);
+
+    CompletableFuture<SearchResponse> searchScroll(SearchScrollRequest request);
+
+    CompletableFuture<ClearScrollResponse> clearScroll(ClearScrollRequest request);
+}
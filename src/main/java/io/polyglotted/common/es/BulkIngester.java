@@ -0,0 +1,198 @@
+package io.polyglotted.common.es;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class BulkIngester implements AutoCloseable {
+    private final ElasticClient client;
+    private final Listener listener;
+    private final int bulkActions;
+    private final long bulkSizeInBytes;
+    private final int concurrentRequests;
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong executionIds = new AtomicLong();
+    private BulkRequest bulkRequest = new BulkRequest();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public interface Listener {
+        void onFailure(DocWriteRequest<?> request, Exception cause);
+
+        default void beforeBulk(long executionId, BulkRequest request) { }
+
+        default void afterBulk(long executionId, BulkRequest request, BulkResponse response) { }
+    }
+
+    private BulkIngester(Builder builder) {
+        this.client = builder.client;
+        this.listener = builder.listener;
+        this.bulkActions = builder.bulkActions;
+        this.bulkSizeInBytes = builder.bulkSizeInBytes;
+        this.concurrentRequests = builder.concurrentRequests;
+        this.inFlight = new Semaphore(concurrentRequests);
+        if (builder.flushIntervalMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "bulk-ingester-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledFlush, builder.flushIntervalMillis, builder.flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        else { this.scheduler = null; }
+    }
+
+    public static Builder builder(ElasticClient client, Listener listener) { return new Builder(client, listener); }
+
+    public BulkIngester add(IndexRequest request) { return addInternal(request); }
+
+    public BulkIngester add(UpdateRequest request) { return addInternal(request); }
+
+    public BulkIngester add(DeleteRequest request) { return addInternal(request); }
+
+    public BulkIngester add(DocWriteRequest<?> request) { return addInternal(request); }
+
+    public void flush() {
+        checkState(!closed.get(), "bulk ingester already closed");
+        execute(swapIfNotEmpty());
+    }
+
+    public int inFlightRequests() { return concurrentRequests - inFlight.availablePermits(); }
+
+    @Override public void close() {
+        try { awaitClose(Long.MAX_VALUE, TimeUnit.MILLISECONDS); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+    }
+
+    public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) { if (!closed.compareAndSet(false, true)) { return true; } }
+        long start = System.nanoTime(), timeoutNanos = unit.toNanos(timeout);
+        if (scheduler != null) {
+            scheduler.shutdown();
+            if (!scheduler.awaitTermination(remaining(start, timeoutNanos), TimeUnit.NANOSECONDS)) {
+                BulkRequest pending = swapIfNotEmpty();
+                if (pending != null) { failAll(pending, new ElasticException("bulk ingester close timed out before flush")); }
+                return false;
+            }
+        }
+        execute(swapIfNotEmpty());
+        if (inFlight.tryAcquire(concurrentRequests, remaining(start, timeoutNanos), TimeUnit.NANOSECONDS)) {
+            inFlight.release(concurrentRequests);
+            return true;
+        }
+        return false;
+    }
+
+    private static long remaining(long start, long timeoutNanos) { return Math.max(0, timeoutNanos - (System.nanoTime() - start)); }
+
+    private BulkIngester addInternal(DocWriteRequest<?> request) {
+        BulkRequest toExecute = null;
+        synchronized (this) {
+            checkState(!closed.get(), "bulk ingester already closed");
+            bulkRequest.add(request);
+            if (bulkRequest.numberOfActions() >= bulkActions || bulkRequest.estimatedSizeInBytes() >= bulkSizeInBytes) {
+                toExecute = bulkRequest;
+                bulkRequest = new BulkRequest();
+            }
+        }
+        execute(toExecute);
+        return this;
+    }
+
+    private synchronized BulkRequest swapIfNotEmpty() {
+        if (bulkRequest.numberOfActions() == 0) { return null; }
+        BulkRequest result = bulkRequest;
+        bulkRequest = new BulkRequest();
+        return result;
+    }
+
+    private void scheduledFlush() {
+        try { execute(swapIfNotEmpty()); } catch (Exception ex) { log.warn("scheduled bulk flush failed", ex); }
+    }
+
+    private void execute(BulkRequest request) {
+        if (request == null) { return; }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            failAll(request, ie);
+            return;
+        }
+        long executionId = executionIds.incrementAndGet();
+        try {
+            listener.beforeBulk(executionId, request);
+            client.bulkAsync(request, new ActionListener<BulkResponse>() {
+                @Override public void onResponse(BulkResponse response) {
+                    try { handleResponse(executionId, request, response); } finally { inFlight.release(); }
+                }
+
+                @Override public void onFailure(Exception ex) {
+                    try { failAll(request, ex); } finally { inFlight.release(); }
+                }
+            });
+        } catch (Exception ex) {
+            inFlight.release();
+            failAll(request, ex);
+        }
+    }
+
+    private void handleResponse(long executionId, BulkRequest request, BulkResponse response) {
+        if (response.hasFailures()) {
+            List<DocWriteRequest<?>> requests = BulkRetrier.requestsOf(request);
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed()) { notifyFailure(requests.get(item.getItemId()), item.getFailure().getCause()); }
+            }
+        }
+        try { listener.afterBulk(executionId, request, response); } catch (Exception ex) { log.warn("bulk listener failed", ex); }
+    }
+
+    private void failAll(BulkRequest request, Exception cause) {
+        for (DocWriteRequest<?> item : request.requests()) { notifyFailure(item, cause); }
+    }
+
+    private void notifyFailure(DocWriteRequest<?> request, Exception cause) {
+        try { listener.onFailure(request, cause); } catch (Exception ex) { log.warn("bulk listener failed", ex); }
+    }
+
+    public static final class Builder {
+        private final ElasticClient client;
+        private final Listener listener;
+        private int bulkActions = 1000;
+        private long bulkSizeInBytes = 5 * 1024 * 1024;
+        private long flushIntervalMillis = 0;
+        private int concurrentRequests = 1;
+
+        private Builder(ElasticClient client, Listener listener) {
+            this.client = client;
+            this.listener = listener;
+        }
+
+        public Builder bulkActions(int bulkActions) { this.bulkActions = bulkActions <= 0 ? Integer.MAX_VALUE : bulkActions; return this; }
+
+        public Builder bulkSizeInBytes(long bulkSizeInBytes) { this.bulkSizeInBytes = bulkSizeInBytes <= 0 ? Long.MAX_VALUE : bulkSizeInBytes; return this; }
+
+        public Builder flushInterval(long interval, TimeUnit unit) { this.flushIntervalMillis = unit.toMillis(interval); return this; }
+
+        public Builder concurrentRequests(int concurrentRequests) { this.concurrentRequests = Math.max(1, concurrentRequests); return this; }
+
+        public BulkIngester build() { return new BulkIngester(this); }
+    }
+}
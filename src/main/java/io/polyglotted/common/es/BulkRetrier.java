@@ -0,0 +1,89 @@
+package io.polyglotted.common.es;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.elasticsearch.rest.RestStatus.TOO_MANY_REQUESTS;
+
+@Slf4j
+@RequiredArgsConstructor
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class BulkRetrier {
+    public static final BulkRetrier DEFAULT_RETRIER = new BulkRetrier(8, 50, 5_000);
+    private final int maxRetries;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public BulkResponse execute(ElasticClient client, BulkRequest request) {
+        List<DocWriteRequest<?>> requests = requestsOf(request);
+        BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+        List<Integer> pending = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) { pending.add(i); }
+
+        long tookInMillis = 0;
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            BulkResponse response = client.bulk(subRequest(request, pending));
+            tookInMillis += response.getTookInMillis();
+
+            boolean canRetry = attempt < maxRetries;
+            List<Integer> rejected = new ArrayList<>();
+            BulkItemResponse[] subItems = response.getItems();
+            for (int j = 0; j < subItems.length; j++) {
+                int original = pending.get(j);
+                BulkItemResponse item = subItems[j];
+                items[original] = reIndex(original, item);
+                if (canRetry && isRejected(item)) { rejected.add(original); }
+            }
+            if (!rejected.isEmpty()) {
+                log.debug("retrying {} rejected bulk items, attempt {}", rejected.size(), attempt + 1);
+                if (!backoff(attempt)) { break; }
+            }
+            pending = rejected;
+        }
+        return new BulkResponse(items, tookInMillis);
+    }
+
+    private static BulkRequest subRequest(BulkRequest request, List<Integer> pending) {
+        if (pending.size() == request.numberOfActions()) { return request; }
+        BulkRequest result = new BulkRequest().setRefreshPolicy(request.getRefreshPolicy())
+            .waitForActiveShards(request.waitForActiveShards()).timeout(request.timeout());
+        List<DocWriteRequest<?>> requests = requestsOf(request);
+        for (Integer index : pending) { result.add(requests.get(index)); }
+        return result;
+    }
+
+    private static BulkItemResponse reIndex(int itemId, BulkItemResponse item) {
+        if (item.getItemId() == itemId) { return item; }
+        return item.isFailed() ? new BulkItemResponse(itemId, item.getOpType(), item.getFailure()) :
+            new BulkItemResponse(itemId, item.getOpType(), item.getResponse());
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<DocWriteRequest<?>> requestsOf(BulkRequest request) { return (List<DocWriteRequest<?>>) (List<?>) request.requests(); }
+
+    private static boolean isRejected(BulkItemResponse item) {
+        return item.isFailed() && (item.getFailure().getStatus() == TOO_MANY_REQUESTS ||
+            ExceptionsHelper.unwrapCause(item.getFailure().getCause()) instanceof EsRejectedExecutionException);
+    }
+
+    private boolean backoff(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt, 30));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package io.polyglotted.common.es;
+
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+import static io.polyglotted.common.es.ElasticException.handleEx;
+
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class CachingElasticClient extends ForwardingElasticClient {
+    private static final Joiner KEY_JOINER = Joiner.on(',');
+    private static final Object UNCACHED = new Object();
+    private final Cache<String, Object> cache;
+    private final AtomicLong indexGeneration = new AtomicLong();
+    private final AtomicLong templateGeneration = new AtomicLong();
+    private final AtomicLong pipelineGeneration = new AtomicLong();
+
+    public CachingElasticClient(ElasticClient delegate, long maximumSize, long ttl, TimeUnit unit) {
+        super(delegate);
+        checkState(maximumSize > 0, "maximumSize must be positive");
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl, unit).recordStats().build();
+    }
+
+    public Map<String, Object> cacheStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.size());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        result.put("hitRate", stats.hitRate());
+        return result;
+    }
+
+    public void invalidateAll() {
+        indexGeneration.incrementAndGet();
+        templateGeneration.incrementAndGet();
+        pipelineGeneration.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Override public boolean indexExists(String index) {
+        // negative answers are not cached as index and bulk calls may auto-create the index
+        return cached(indexGeneration, "indexExists", index, () -> delegate.indexExists(index) ? Boolean.TRUE : null, Boolean.FALSE);
+    }
+
+    @Override public boolean typeExists(String index, String... types) {
+        return cached(indexGeneration, "typeExists", index + "/" + KEY_JOINER.join(types),
+            () -> delegate.typeExists(index, types) ? Boolean.TRUE : null, Boolean.FALSE);
+    }
+
+    @Override public Set<String> getIndices(String alias) {
+        return cached(indexGeneration, "getIndices", alias, () -> ImmutableSet.copyOf(delegate.getIndices(alias)), null);
+    }
+
+    @Override public String getIndexMeta(String... indices) {
+        return cached(indexGeneration, "getIndexMeta", KEY_JOINER.join(indices), () -> delegate.getIndexMeta(indices), null);
+    }
+
+    @Override public String getSettings(String... indices) {
+        return cached(indexGeneration, "getSettings", KEY_JOINER.join(indices), () -> delegate.getSettings(indices), null);
+    }
+
+    @Override public String getMapping(String index, String type) {
+        return cached(indexGeneration, "getMapping", index + "/" + type, () -> delegate.getMapping(index, type), null);
+    }
+
+    @Override public boolean templateExists(String name) {
+        return cached(templateGeneration, "templateExists", name, () -> delegate.templateExists(name), null);
+    }
+
+    @Override public boolean pipelineExists(String id) {
+        return cached(pipelineGeneration, "pipelineExists", id, () -> delegate.pipelineExists(id), null);
+    }
+
+    @Override public void openIndex(String... indices) {
+        try { delegate.openIndex(indices); } finally { invalidate(indexGeneration); }
+    }
+
+    @Override public void closeIndex(String... indices) {
+        try { delegate.closeIndex(indices); } finally { invalidate(indexGeneration); }
+    }
+
+    @Override public void createIndex(CreateIndexRequest request) {
+        try { delegate.createIndex(request); } finally { invalidate(indexGeneration); }
+    }
+
+    @Override public void createIndex(String index, String resource) {
+        try { delegate.createIndex(index, resource); } finally { invalidate(indexGeneration); }
+    }
+
+    @Override public void updateAlias(IndicesAliasesRequest request) {
+        try { delegate.updateAlias(request); } finally { invalidate(indexGeneration); }
+    }
+
+    @Override public void updateSettings(UpdateSettingsRequest request) {
+        try { delegate.updateSettings(request); } finally { invalidate(indexGeneration); }
+    }
+
+    @Override public void putMapping(PutMappingRequest request) {
+        try { delegate.putMapping(request); } finally { invalidate(indexGeneration); }
+    }
+
+    @Override public void dropIndex(String... indices) {
+        try { delegate.dropIndex(indices); } finally { invalidate(indexGeneration); }
+    }
+
+    @Override public void buildPipeline(String id, String resource) {
+        try { delegate.buildPipeline(id, resource); } finally { invalidate(pipelineGeneration); }
+    }
+
+    @Override public void deletePipeline(String id) {
+        try { delegate.deletePipeline(id); } finally { invalidate(pipelineGeneration); }
+    }
+
+    @Override public void putTemplate(String name, String body) {
+        try { delegate.putTemplate(name, body); } finally { invalidate(templateGeneration); }
+    }
+
+    @Override public void deleteTemplate(String name) {
+        try { delegate.deleteTemplate(name); } finally { invalidate(templateGeneration); }
+    }
+
+    @Override public String simplePost(String endpoint, String body, String methodName) {
+        try { return delegate.simplePost(endpoint, body, methodName); } finally { invalidateAll(); }
+    }
+
+    @Override public String simplePut(String endpoint, String body, String methodName) {
+        try { return delegate.simplePut(endpoint, body, methodName); } finally { invalidateAll(); }
+    }
+
+    @Override public void simpleDelete(String endpoint, String methodName) {
+        try { delegate.simpleDelete(endpoint, methodName); } finally { invalidateAll(); }
+    }
+
+    @Override public void close() throws Exception {
+        cache.invalidateAll();
+        super.close();
+    }
+
+    /*
+     * keys carry the generation of their group, so a load racing with a mutation lands under a
+     * stale key and is never served; the stale entry ages out through the size and ttl bounds.
+     * concurrent misses on a key share one load; an uncacheable answer is handed to the waiting
+     * callers as UNCACHED and then dropped from the cache.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(AtomicLong generation, String method, String argument, Callable<T> loader, T uncachedValue) {
+        String key = method + "#" + generation.get() + "#" + argument;
+        try {
+            Object value = cache.get(key, () -> {
+                T result = loader.call();
+                return result == null ? UNCACHED : result;
+            });
+            if (value != UNCACHED) { return (T) value; }
+            cache.asMap().remove(key, UNCACHED);
+            return uncachedValue;
+        } catch (ExecutionException | UncheckedExecutionException ex) { throw handleEx(method + " failed", ex.getCause()); }
+    }
+
+    private void invalidate(AtomicLong generation) { generation.incrementAndGet(); }
+}
@@ -0,0 +1,136 @@
+package io.polyglotted.common.es;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+import static io.polyglotted.common.es.ElasticException.handleEx;
+
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class CoalescingElasticClient extends ForwardingElasticClient {
+    private final int maxBatch;
+    private final long windowNanos;
+    private final ScheduledExecutorService scheduler;
+    private List<PendingGet> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed = false;
+
+    public CoalescingElasticClient(ElasticClient delegate, int maxBatch, long window, TimeUnit unit) {
+        super(delegate);
+        checkState(maxBatch > 0, "maxBatch must be positive");
+        this.maxBatch = maxBatch;
+        this.windowNanos = unit.toNanos(window);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "get-coalescer-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override public GetResponse get(GetRequest request) {
+        if (!isCoalescable(request)) { return delegate.get(request); }
+        try {
+            return enqueue(request).join();
+        } catch (CompletionException ce) { throw handleEx("get failed", ce.getCause()); }
+    }
+
+    @Override public void close() throws Exception {
+        List<PendingGet> batch;
+        synchronized (this) {
+            closed = true;
+            batch = swap();
+        }
+        send(batch);
+        scheduler.shutdown();
+        super.close();
+    }
+
+    static boolean isCoalescable(GetRequest request) { return request.preference() == null && request.realtime() && !request.refresh(); }
+
+    private CompletableFuture<GetResponse> enqueue(GetRequest request) {
+        PendingGet get = new PendingGet(request);
+        List<PendingGet> batch = null;
+        synchronized (this) {
+            checkState(!closed, "coalescing client already closed");
+            pending.add(get);
+            if (pending.size() >= maxBatch) { batch = swap(); }
+            else if (pending.size() == 1) { scheduledFlush = scheduler.schedule(this::scheduledFlush, windowNanos, TimeUnit.NANOSECONDS); }
+        }
+        if (batch != null) { send(batch); }
+        return get.future;
+    }
+
+    private void scheduledFlush() {
+        List<PendingGet> batch;
+        synchronized (this) { batch = swap(); }
+        send(batch);
+    }
+
+    private List<PendingGet> swap() {
+        if (scheduledFlush != null) { scheduledFlush.cancel(false); scheduledFlush = null; }
+        List<PendingGet> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void send(List<PendingGet> batch) {
+        if (batch.isEmpty()) { return; }
+        if (batch.size() == 1) {
+            PendingGet single = batch.get(0);
+            delegate.async().get(single.request).whenComplete(single::complete);
+            return;
+        }
+        MultiGetRequest multiGet = new MultiGetRequest();
+        for (PendingGet get : batch) { multiGet.add(toItem(get.request)); }
+        try {
+            delegate.async().multiGet(multiGet).whenComplete((response, ex) -> {
+                if (ex != null) { batch.forEach(get -> get.complete(null, ex)); }
+                else { complete(batch, response); }
+            });
+        } catch (Exception ex) { batch.forEach(get -> get.complete(null, ex)); }
+    }
+
+    private static void complete(List<PendingGet> batch, MultiGetResponse response) {
+        MultiGetItemResponse[] items = response.getResponses();
+        for (int i = 0; i < batch.size(); i++) {
+            if (i >= items.length) { batch.get(i).complete(null, new ElasticException("get failed: missing multiGet response item")); }
+            else if (items[i].isFailed()) {
+                MultiGetResponse.Failure failure = items[i].getFailure();
+                batch.get(i).complete(null, new ElasticException("get failed: " + failure.getMessage(), failure.getFailure()));
+            }
+            else { batch.get(i).complete(items[i].getResponse(), null); }
+        }
+    }
+
+    private static MultiGetRequest.Item toItem(GetRequest request) {
+        return new MultiGetRequest.Item(request.index(), request.type(), request.id()).routing(request.routing()).parent(request.parent())
+            .storedFields(request.storedFields()).fetchSourceContext(request.fetchSourceContext())
+            .version(request.version()).versionType(request.versionType());
+    }
+
+    private static final class PendingGet {
+        private final GetRequest request;
+        private final CompletableFuture<GetResponse> future = new CompletableFuture<>();
+
+        PendingGet(GetRequest request) { this.request = request; }
+
+        void complete(GetResponse response, Throwable ex) {
+            if (ex == null) { future.complete(response); }
+            else { future.completeExceptionally(ex instanceof CompletionException ? ex.getCause() : ex); }
+        }
+    }
+}
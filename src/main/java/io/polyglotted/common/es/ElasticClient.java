@@ -26,6 +26,8 @@ import java.util.Set;
 @SuppressWarnings("unused")
 public interface ElasticClient extends AutoCloseable {
 
+    default AsyncElasticClient async() { throw new UnsupportedOperationException(getClass().getSimpleName() + " has no async view"); }
+
     boolean indexExists(String index);
 
     boolean typeExists(String index, String... types);
@@ -58,8 +60,12 @@ public interface ElasticClient extends AutoCloseable {
 
     void waitForStatus(String status);
 
+    Map<String, Object> waitForStatus(HealthWait wait);
+
     Map<String, Object> clusterHealth();
 
+    Map<String, Object> connectionPoolStats();
+
     void buildPipeline(String id, String resource);
 
     boolean pipelineExists(String id);
@@ -80,6 +86,8 @@ public interface ElasticClient extends AutoCloseable {
 
     BulkResponse bulk(BulkRequest request);
 
+    default BulkResponse bulk(BulkRequest request, BulkRetrier retrier) { return retrier.execute(this, request); }
+
     void bulkAsync(BulkRequest bulkRequest, ActionListener<BulkResponse> listener);
 
     GetResponse get(GetRequest request);
@@ -98,6 +106,8 @@ public interface ElasticClient extends AutoCloseable {
 
     String simpleGet(String endpoint, String methodName);
 
+    Map<String, Object> filteredGet(String endpoint, String methodName, String... filterPaths);
+
     String simplePost(String endpoint, String body, String methodName);
 
     String simplePut(String endpoint, String body, String methodName);
@@ -0,0 +1,7 @@
+package io.polyglotted.common.es;
+
+@SuppressWarnings({"WeakerAccess", "Serial"})
+public class ElasticOverloadedException extends ElasticException {
+
+    public ElasticOverloadedException(String message) { super(message); }
+}
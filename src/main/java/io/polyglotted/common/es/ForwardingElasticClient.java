@@ -0,0 +1,118 @@
+package io.polyglotted.common.es;
+
+import lombok.RequiredArgsConstructor;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.index.query.QueryBuilder;
+
+import java.util.Map;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public abstract class ForwardingElasticClient implements ElasticClient {
+    protected final ElasticClient delegate;
+
+    @Override public void close() throws Exception { delegate.close(); }
+
+    @Override public AsyncElasticClient async() { return delegate.async(); }
+
+    @Override public boolean indexExists(String index) { return delegate.indexExists(index); }
+
+    @Override public boolean typeExists(String index, String... types) { return delegate.typeExists(index, types); }
+
+    @Override public Set<String> getIndices(String alias) { return delegate.getIndices(alias); }
+
+    @Override public String getIndexMeta(String... indices) { return delegate.getIndexMeta(indices); }
+
+    @Override public String getSettings(String... indices) { return delegate.getSettings(indices); }
+
+    @Override public String getMapping(String index, String type) { return delegate.getMapping(index, type); }
+
+    @Override public void openIndex(String... indices) { delegate.openIndex(indices); }
+
+    @Override public void closeIndex(String... indices) { delegate.closeIndex(indices); }
+
+    @Override public void createIndex(CreateIndexRequest request) { delegate.createIndex(request); }
+
+    @Override public void createIndex(String index, String resource) { delegate.createIndex(index, resource); }
+
+    @Override public void updateAlias(IndicesAliasesRequest request) { delegate.updateAlias(request); }
+
+    @Override public void updateSettings(UpdateSettingsRequest request) { delegate.updateSettings(request); }
+
+    @Override public void putMapping(PutMappingRequest request) { delegate.putMapping(request); }
+
+    @Override public void forceRefresh(String... indices) { delegate.forceRefresh(indices); }
+
+    @Override public void dropIndex(String... indices) { delegate.dropIndex(indices); }
+
+    @Override public void waitForStatus(String status) { delegate.waitForStatus(status); }
+
+    @Override public Map<String, Object> waitForStatus(HealthWait wait) { return delegate.waitForStatus(wait); }
+
+    @Override public Map<String, Object> clusterHealth() { return delegate.clusterHealth(); }
+
+    @Override public Map<String, Object> connectionPoolStats() { return delegate.connectionPoolStats(); }
+
+    @Override public void buildPipeline(String id, String resource) { delegate.buildPipeline(id, resource); }
+
+    @Override public boolean pipelineExists(String id) { return delegate.pipelineExists(id); }
+
+    @Override public void deletePipeline(String id) { delegate.deletePipeline(id); }
+
+    @Override public void putTemplate(String name, String body) { delegate.putTemplate(name, body); }
+
+    @Override public boolean templateExists(String name) { return delegate.templateExists(name); }
+
+    @Override public void deleteTemplate(String name) { delegate.deleteTemplate(name); }
+
+    @Override public IndexResponse index(IndexRequest request) { return delegate.index(request); }
+
+    @Override public UpdateResponse update(UpdateRequest request) { return delegate.update(request); }
+
+    @Override public DeleteResponse delete(DeleteRequest request) { return delegate.delete(request); }
+
+    @Override public BulkResponse bulk(BulkRequest request) { return delegate.bulk(request); }
+
+    @Override public void bulkAsync(BulkRequest bulkRequest, ActionListener<BulkResponse> listener) { delegate.bulkAsync(bulkRequest, listener); }
+
+    @Override public GetResponse get(GetRequest request) { return delegate.get(request); }
+
+    @Override public MultiGetResponse multiGet(MultiGetRequest request) { return delegate.multiGet(request); }
+
+    @Override public SearchResponse search(SearchRequest request) { return delegate.search(request); }
+
+    @Override public MultiSearchResponse multiSearch(MultiSearchRequest request) { return delegate.multiSearch(request); }
+
+    @Override public SearchResponse searchScroll(SearchScrollRequest request) { return delegate.searchScroll(request); }
+
+    @Override public ClearScrollResponse clearScroll(ClearScrollRequest request) { return delegate.clearScroll(request); }
+
+    @Override public long deleteByQuery(String index, QueryBuilder query) { return delegate.deleteByQuery(index, query); }
+
+    @Override public String simpleGet(String endpoint, String methodName) { return delegate.simpleGet(endpoint, methodName); }
+
+    @Override public Map<String, Object> filteredGet(String endpoint, String methodName, String... filterPaths) { return delegate.filteredGet(endpoint, methodName, filterPaths); }
+
+    @Override public String simplePost(String endpoint, String body, String methodName) { return delegate.simplePost(endpoint, body, methodName); }
+
+    @Override public String simplePut(String endpoint, String body, String methodName) { return delegate.simplePut(endpoint, body, methodName); }
+
+    @Override public void simpleDelete(String endpoint, String methodName) { delegate.simpleDelete(endpoint, methodName); }
+}
@@ -0,0 +1,372 @@
+package io.polyglotted.common.es;
+
+import io.polyglotted.common.config.SettingsHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.index.query.QueryBuilder;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+import static org.elasticsearch.rest.RestStatus.TOO_MANY_REQUESTS;
+
+/*
+ * fails fast with ElasticOverloadedException instead of queueing behind an overloaded cluster. an aimd limit
+ * caps in-flight calls, growing while calls are fast and shrinking on slow calls, rejections and timeouts;
+ * a count-based circuit breaker opens when too many recent calls failed for cluster-side reasons. once the
+ * open duration passes it admits a handful of probe calls, closing only after all of them complete without
+ * a cluster-side failure and re-opening on the first one that has one.
+ * async calls hold their slot until the returned future completes. waitForStatus, sync or async, is
+ * deliberately unguarded as it is used while the cluster is still coming up.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class GuardedElasticClient extends ForwardingElasticClient {
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int HALF_OPEN_CALLS = 5;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final boolean[] outcomes;
+    private double limit;
+    private int inFlight = 0;
+    private int recorded = 0;
+    private int failures = 0;
+    private int position = 0;
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private int probes = 0;
+    private int probeSuccesses = 0;
+    private long rejected = 0;
+    private volatile AsyncElasticClient asyncClient;
+
+    public GuardedElasticClient(ElasticClient delegate) { this(delegate, 20, 1, 500, 5, TimeUnit.SECONDS, 50, 100, 10, TimeUnit.SECONDS); }
+
+    public GuardedElasticClient(ElasticClient delegate, int initialLimit, int minLimit, int maxLimit, long latencyThreshold, TimeUnit latencyUnit,
+                                int failureRatePercent, int windowSize, long openDuration, TimeUnit openUnit) {
+        super(delegate);
+        checkState(minLimit > 0 && minLimit <= initialLimit && initialLimit <= maxLimit, "limits must satisfy 0 < min <= initial <= max");
+        checkState(windowSize > 0, "windowSize must be positive");
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyUnit.toNanos(latencyThreshold);
+        this.failureRatePercent = failureRatePercent;
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.max(1, windowSize / 5);
+        this.openNanos = openUnit.toNanos(openDuration);
+    }
+
+    static ElasticClient guarded(SettingsHolder settingsHolder, String prefix, ElasticClient client) {
+        if (!settingsHolder.booleanValue(prefix + ".guard.enabled", false)) { return client; }
+        return new GuardedElasticClient(client, settingsHolder.intValue(prefix + ".guard.limit.initial", 20),
+            settingsHolder.intValue(prefix + ".guard.limit.min", 1), settingsHolder.intValue(prefix + ".guard.limit.max", 500),
+            settingsHolder.longValue(prefix + ".guard.latency.millis", 5_000L), TimeUnit.MILLISECONDS,
+            settingsHolder.intValue(prefix + ".guard.failureRate.percent", 50), settingsHolder.intValue(prefix + ".guard.window.size", 100),
+            settingsHolder.longValue(prefix + ".guard.open.millis", 10_000L), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized Map<String, Object> guardStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("state", state.name().toLowerCase(Locale.ROOT));
+        result.put("limit", (int) limit);
+        result.put("inFlight", inFlight);
+        result.put("failureRate", recorded == 0 ? 0 : failures * 100 / recorded);
+        result.put("rejected", rejected);
+        return result;
+    }
+
+    @Override public AsyncElasticClient async() {
+        AsyncElasticClient result = asyncClient;
+        if (result == null) { asyncClient = result = new GuardedAsyncClient(delegate.async()); }
+        return result;
+    }
+
+    @Override public boolean indexExists(String index) { return guard("indexExists", () -> delegate.indexExists(index)); }
+
+    @Override public boolean typeExists(String index, String... types) { return guard("typeExists", () -> delegate.typeExists(index, types)); }
+
+    @Override public Set<String> getIndices(String alias) { return guard("getIndices", () -> delegate.getIndices(alias)); }
+
+    @Override public String getIndexMeta(String... indices) { return guard("getIndexMeta", () -> delegate.getIndexMeta(indices)); }
+
+    @Override public String getSettings(String... indices) { return guard("getSettings", () -> delegate.getSettings(indices)); }
+
+    @Override public String getMapping(String index, String type) { return guard("getMapping", () -> delegate.getMapping(index, type)); }
+
+    @Override public void openIndex(String... indices) { run("openIndex", () -> delegate.openIndex(indices)); }
+
+    @Override public void closeIndex(String... indices) { run("closeIndex", () -> delegate.closeIndex(indices)); }
+
+    @Override public void createIndex(CreateIndexRequest request) { run("createIndex", () -> delegate.createIndex(request)); }
+
+    @Override public void createIndex(String index, String resource) { run("createIndex", () -> delegate.createIndex(index, resource)); }
+
+    @Override public void updateAlias(IndicesAliasesRequest request) { run("updateAlias", () -> delegate.updateAlias(request)); }
+
+    @Override public void updateSettings(UpdateSettingsRequest request) { run("updateSettings", () -> delegate.updateSettings(request)); }
+
+    @Override public void putMapping(PutMappingRequest request) { run("putMapping", () -> delegate.putMapping(request)); }
+
+    @Override public void forceRefresh(String... indices) { run("forceRefresh", () -> delegate.forceRefresh(indices)); }
+
+    @Override public void dropIndex(String... indices) { run("dropIndex", () -> delegate.dropIndex(indices)); }
+
+    @Override public Map<String, Object> clusterHealth() { return guard("clusterHealth", delegate::clusterHealth); }
+
+    @Override public void buildPipeline(String id, String resource) { run("buildPipeline", () -> delegate.buildPipeline(id, resource)); }
+
+    @Override public boolean pipelineExists(String id) { return guard("pipelineExists", () -> delegate.pipelineExists(id)); }
+
+    @Override public void deletePipeline(String id) { run("deletePipeline", () -> delegate.deletePipeline(id)); }
+
+    @Override public void putTemplate(String name, String body) { run("putTemplate", () -> delegate.putTemplate(name, body)); }
+
+    @Override public boolean templateExists(String name) { return guard("templateExists", () -> delegate.templateExists(name)); }
+
+    @Override public void deleteTemplate(String name) { run("deleteTemplate", () -> delegate.deleteTemplate(name)); }
+
+    @Override public IndexResponse index(IndexRequest request) { return guard("index", () -> delegate.index(request)); }
+
+    @Override public UpdateResponse update(UpdateRequest request) { return guard("update", () -> delegate.update(request)); }
+
+    @Override public DeleteResponse delete(DeleteRequest request) { return guard("delete", () -> delegate.delete(request)); }
+
+    @Override public BulkResponse bulk(BulkRequest request) { return guard("bulk", () -> delegate.bulk(request), GuardedElasticClient::hasRejections); }
+
+    @Override public void bulkAsync(BulkRequest request, ActionListener<BulkResponse> listener) {
+        boolean probe = acquire("bulkAsync");
+        long start = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            delegate.bulkAsync(request, new ActionListener<BulkResponse>() {
+                @Override public void onResponse(BulkResponse response) {
+                    if (released.compareAndSet(false, true)) { release(probe, System.nanoTime() - start, null, hasRejections(response)); }
+                    listener.onResponse(response);
+                }
+
+                @Override public void onFailure(Exception ex) {
+                    if (released.compareAndSet(false, true)) { release(probe, System.nanoTime() - start, ex, false); }
+                    listener.onFailure(ex);
+                }
+            });
+        } catch (RuntimeException ex) {
+            if (released.compareAndSet(false, true)) { release(probe, System.nanoTime() - start, ex, false); }
+            throw ex;
+        }
+    }
+
+    @Override public GetResponse get(GetRequest request) { return guard("get", () -> delegate.get(request)); }
+
+    @Override public MultiGetResponse multiGet(MultiGetRequest request) { return guard("multiGet", () -> delegate.multiGet(request)); }
+
+    @Override public SearchResponse search(SearchRequest request) { return guard("search", () -> delegate.search(request)); }
+
+    @Override public MultiSearchResponse multiSearch(MultiSearchRequest request) { return guard("multiSearch", () -> delegate.multiSearch(request)); }
+
+    @Override public SearchResponse searchScroll(SearchScrollRequest request) { return guard("searchScroll", () -> delegate.searchScroll(request)); }
+
+    @Override public ClearScrollResponse clearScroll(ClearScrollRequest request) { return guard("clearScroll", () -> delegate.clearScroll(request)); }
+
+    @Override public long deleteByQuery(String index, QueryBuilder query) { return guard("deleteByQuery", () -> delegate.deleteByQuery(index, query)); }
+
+    @Override public String simpleGet(String endpoint, String methodName) { return guard(methodName, () -> delegate.simpleGet(endpoint, methodName)); }
+
+    @Override public Map<String, Object> filteredGet(String endpoint, String methodName, String... filterPaths) {
+        return guard(methodName, () -> delegate.filteredGet(endpoint, methodName, filterPaths));
+    }
+
+    @Override public String simplePost(String endpoint, String body, String methodName) {
+        return guard(methodName, () -> delegate.simplePost(endpoint, body, methodName));
+    }
+
+    @Override public String simplePut(String endpoint, String body, String methodName) {
+        return guard(methodName, () -> delegate.simplePut(endpoint, body, methodName));
+    }
+
+    @Override public void simpleDelete(String endpoint, String methodName) { run(methodName, () -> delegate.simpleDelete(endpoint, methodName)); }
+
+    private void run(String method, Runnable action) { guard(method, () -> { action.run(); return null; }); }
+
+    private <T> T guard(String method, Supplier<T> action) { return guard(method, action, result -> false); }
+
+    private <T> T guard(String method, Supplier<T> action, Predicate<T> overloaded) {
+        boolean probe = acquire(method);
+        long start = System.nanoTime();
+        try {
+            T result = action.get();
+            release(probe, System.nanoTime() - start, null, overloaded.test(result));
+            return result;
+        } catch (RuntimeException ex) {
+            release(probe, System.nanoTime() - start, ex, false);
+            throw ex;
+        }
+    }
+
+    private <T> CompletableFuture<T> guardAsync(String method, Supplier<CompletableFuture<T>> action) { return guardAsync(method, action, result -> false); }
+
+    private <T> CompletableFuture<T> guardAsync(String method, Supplier<CompletableFuture<T>> action, Predicate<T> overloaded) {
+        boolean probe;
+        try {
+            probe = acquire(method);
+        } catch (ElasticOverloadedException ex) { return ListenerFuture.failed(method + " rejected", ex); }
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = action.get();
+        } catch (RuntimeException ex) {
+            release(probe, System.nanoTime() - start, ex, false);
+            throw ex;
+        }
+        return future.whenComplete((result, ex) -> release(probe, System.nanoTime() - start, ex, ex == null && overloaded.test(result)));
+    }
+
+    private synchronized boolean acquire(String method) {
+        long now = System.nanoTime();
+        if (state == State.OPEN && now - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            probes = probeSuccesses = 0;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && probes >= HALF_OPEN_CALLS)) {
+            rejected++;
+            throw new ElasticOverloadedException(method + " rejected: circuit breaker is " + state.name().toLowerCase(Locale.ROOT));
+        }
+        if (inFlight >= (int) limit) {
+            rejected++;
+            throw new ElasticOverloadedException(method + " rejected: concurrency limit " + (int) limit + " reached");
+        }
+        inFlight++;
+        if (state == State.HALF_OPEN) { probes++; }
+        return state == State.HALF_OPEN;
+    }
+
+    private synchronized void release(boolean probe, long latencyNanos, Throwable failure, boolean overloaded) {
+        boolean clusterFailure = failure != null && isClusterFailure(failure);
+        if (overloaded || clusterFailure || latencyNanos > latencyThresholdNanos) { limit = Math.max(minLimit, limit * BACKOFF_RATIO); }
+        else if (inFlight * 2 >= limit) { limit = Math.min(maxLimit, limit + 1 / limit); }
+        inFlight--;
+
+        if (probe) {
+            if (state != State.HALF_OPEN) { return; }
+            if (clusterFailure) { openBreaker(); }
+            else if (++probeSuccesses >= HALF_OPEN_CALLS) { closeBreaker(); }
+            return;
+        }
+        if (recorded == outcomes.length) { failures -= outcomes[position] ? 1 : 0; }
+        else { recorded++; }
+        outcomes[position] = clusterFailure;
+        failures += clusterFailure ? 1 : 0;
+        position = (position + 1) % outcomes.length;
+        if (state == State.CLOSED && recorded >= minimumCalls && failures * 100 >= recorded * failureRatePercent) { openBreaker(); }
+    }
+
+    private void openBreaker() {
+        log.warn("opening elastic circuit breaker: {} of the last {} calls failed", failures, recorded);
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void closeBreaker() {
+        log.info("closing elastic circuit breaker after successful probes");
+        state = State.CLOSED;
+        recorded = failures = position = 0;
+    }
+
+    private static boolean hasRejections(BulkResponse response) {
+        if (!response.hasFailures()) { return false; }
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed() && item.getFailure().getStatus() == TOO_MANY_REQUESTS) { return true; }
+        }
+        return false;
+    }
+
+    static boolean isClusterFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof ElasticOverloadedException) { return false; }
+            if (cause instanceof ResponseException) { return isClusterStatus(((ResponseException) cause).getResponse().getStatusLine().getStatusCode()); }
+            if (cause instanceof ElasticsearchException) { return isClusterStatus(((ElasticsearchException) cause).status().getStatus()); }
+            if (cause instanceof IOException) { return true; }
+        }
+        return false;
+    }
+
+    private static boolean isClusterStatus(int status) { return status == TOO_MANY_REQUESTS.getStatus() || status >= 500; }
+
+    private enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final class GuardedAsyncClient implements AsyncElasticClient {
+        private final AsyncElasticClient async;
+
+        GuardedAsyncClient(AsyncElasticClient async) { this.async = async; }
+
+        @Override public CompletableFuture<Boolean> indexExists(String index) { return guardAsync("indexExists", () -> async.indexExists(index)); }
+
+        @Override public CompletableFuture<Set<String>> getIndices(String alias) { return guardAsync("getIndices", () -> async.getIndices(alias)); }
+
+        @Override public CompletableFuture<Void> forceRefresh(String... indices) { return guardAsync("forceRefresh", () -> async.forceRefresh(indices)); }
+
+        @Override public CompletableFuture<Map<String, Object>> clusterHealth() { return guardAsync("clusterHealth", async::clusterHealth); }
+
+        @Override public CompletableFuture<Map<String, Object>> waitForStatus(HealthWait wait) { return async.waitForStatus(wait); }
+
+        @Override public CompletableFuture<IndexResponse> index(IndexRequest request) { return guardAsync("index", () -> async.index(request)); }
+
+        @Override public CompletableFuture<UpdateResponse> update(UpdateRequest request) { return guardAsync("update", () -> async.update(request)); }
+
+        @Override public CompletableFuture<DeleteResponse> delete(DeleteRequest request) { return guardAsync("delete", () -> async.delete(request)); }
+
+        @Override public CompletableFuture<BulkResponse> bulk(BulkRequest request) {
+            return guardAsync("bulk", () -> async.bulk(request), GuardedElasticClient::hasRejections);
+        }
+
+        @Override public CompletableFuture<GetResponse> get(GetRequest request) { return guardAsync("get", () -> async.get(request)); }
+
+        @Override public CompletableFuture<MultiGetResponse> multiGet(MultiGetRequest request) { return guardAsync("multiGet", () -> async.multiGet(request)); }
+
+        @Override public CompletableFuture<SearchResponse> search(SearchRequest request) { return guardAsync("search", () -> async.search(request)); }
+
+        @Override public CompletableFuture<MultiSearchResponse> multiSearch(MultiSearchRequest request) {
+            return guardAsync("multiSearch", () -> async.multiSearch(request));
+        }
+
+        @Override public CompletableFuture<SearchResponse> searchScroll(SearchScrollRequest request) {
+            return guardAsync("searchScroll", () -> async.searchScroll(request));
+        }
+
+        @Override public CompletableFuture<ClearScrollResponse> clearScroll(ClearScrollRequest request) {
+            return guardAsync("clearScroll", () -> async.clearScroll(request));
+        }
+    }
+}
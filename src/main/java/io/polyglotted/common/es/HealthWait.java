@@ -0,0 +1,145 @@
+package io.polyglotted.common.es;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
+import org.elasticsearch.action.support.ActiveShardCount;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+import static io.polyglotted.common.es.ElasticException.handleEx;
+
+@Slf4j
+@RequiredArgsConstructor
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class HealthWait {
+    private static final ScheduledExecutorService BACKOFF_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "health-wait-backoff");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String status;
+    private final long timeoutMillis;
+    private final String activeShards;
+    private final boolean noRelocatingShards;
+    private final long pollMillis;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public static HealthWait forStatus(String status) {
+        ClusterHealthStatus.fromString(status);
+        return new HealthWait(status, 300_000, null, false, 10_000, 100, 5_000);
+    }
+
+    public HealthWait timeout(long timeout, TimeUnit unit) {
+        return new HealthWait(status, unit.toMillis(timeout), activeShards, noRelocatingShards, pollMillis, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    public HealthWait activeShards(String count) {
+        ActiveShardCount.parseString(count);
+        return new HealthWait(status, timeoutMillis, count, noRelocatingShards, pollMillis, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    public HealthWait noRelocatingShards() {
+        return new HealthWait(status, timeoutMillis, activeShards, true, pollMillis, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    public HealthWait pollTimeout(long timeout, TimeUnit unit) {
+        checkState(timeout > 0, "pollTimeout must be positive");
+        return new HealthWait(status, timeoutMillis, activeShards, noRelocatingShards, unit.toMillis(timeout), initialBackoffMillis, maxBackoffMillis);
+    }
+
+    public HealthWait backoff(long initial, long max, TimeUnit unit) {
+        return new HealthWait(status, timeoutMillis, activeShards, noRelocatingShards, pollMillis, unit.toMillis(initial), unit.toMillis(max));
+    }
+
+    public Map<String, String> restParams(long serverTimeoutMillis) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("wait_for_status", status);
+        params.put("timeout", serverTimeoutMillis + "ms");
+        if (activeShards != null) { params.put("wait_for_active_shards", activeShards); }
+        if (noRelocatingShards) { params.put("wait_for_no_relocating_shards", "true"); }
+        return params;
+    }
+
+    public ClusterHealthRequest transportRequest(long serverTimeoutMillis) {
+        ClusterHealthRequest request = new ClusterHealthRequest().waitForStatus(ClusterHealthStatus.fromString(status))
+            .timeout(TimeValue.timeValueMillis(serverTimeoutMillis)).waitForNoRelocatingShards(noRelocatingShards);
+        if (activeShards != null) { request.waitForActiveShards(ActiveShardCount.parseString(activeShards)); }
+        return request;
+    }
+
+    /*
+     * polls with a server-side timeout of at most pollMillis until the health call stops timing out or
+     * the overall deadline passes; retryable failures (node down, connection refused) back off exponentially.
+     */
+    public CompletableFuture<Map<String, Object>> poll(LongFunction<CompletableFuture<Map<String, Object>>> attempt, Predicate<Throwable> retryable) {
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        attempt(attempt, retryable, result, deadline, 0);
+        return result;
+    }
+
+    public static Map<String, Object> await(CompletableFuture<Map<String, Object>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ElasticException("waitForStatus interrupted", ie);
+        } catch (ExecutionException ee) { throw handleEx("waitForStatus failed", ee.getCause()); }
+    }
+
+    private void attempt(LongFunction<CompletableFuture<Map<String, Object>>> attempt, Predicate<Throwable> retryable,
+                         CompletableFuture<Map<String, Object>> result, long deadline, int retries) {
+        if (result.isDone()) { return; }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        CompletableFuture<Map<String, Object>> health;
+        try {
+            health = attempt.apply(Math.max(1, Math.min(remaining, pollMillis)));
+        } catch (Exception ex) { health = ListenerFuture.failed("waitForStatus failed", ex); }
+
+        health.whenComplete((map, failure) -> {
+            Throwable cause = (failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure;
+            boolean expired = System.nanoTime() - deadline >= 0;
+            if (cause == null && !Boolean.TRUE.equals(map.get("timed_out"))) { result.complete(map); }
+            else if (cause != null && !isRetryable(cause, retryable)) { result.completeExceptionally(handleEx("waitForStatus failed", cause)); }
+            else if (expired) {
+                result.completeExceptionally(new ElasticException("waitForStatus " + status + " timed out after " + timeoutMillis + "ms" +
+                    (cause == null ? ", last health " + map : ": " + cause.getMessage())));
+            }
+            else if (cause == null) { attempt(attempt, retryable, result, deadline, 0); }
+            else {
+                long delay = Math.min(backoffMillis(retries), TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                log.debug("cluster not reachable for health check, retrying in {}ms: {}", delay, cause.getMessage());
+                BACKOFF_SCHEDULER.schedule(() -> attempt(attempt, retryable, result, deadline, retries + 1), Math.max(delay, 0), TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private long backoffMillis(int retries) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retries, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private static boolean isRetryable(Throwable cause, Predicate<Throwable> retryable) {
+        for (Throwable current = cause; current != null; current = current.getCause()) {
+            if (retryable.test(current)) { return true; }
+            if (current.getCause() == current) { break; }
+        }
+        return false;
+    }
+}
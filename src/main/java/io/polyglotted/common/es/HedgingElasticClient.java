@@ -0,0 +1,219 @@
+package io.polyglotted.common.es;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+import static io.polyglotted.common.es.ElasticException.handleEx;
+
+/*
+ * hedges idempotent reads only: get, multiGet and non-scroll search. the duplicate is the same request sent
+ * again, which both clients route to the next node; the caller's preference is left untouched.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class HedgingElasticClient extends ForwardingElasticClient {
+    private static final int MIN_SAMPLES = 100;
+    private final double percentile;
+    private final long minDelayMicros;
+    private final long maxDelayMicros;
+    private final int budgetPercent;
+    private final ConcurrentMap<String, HedgeStats> stats = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public HedgingElasticClient(ElasticClient delegate) { this(delegate, 95.0, 5, 1_000, TimeUnit.MILLISECONDS, 10); }
+
+    public HedgingElasticClient(ElasticClient delegate, double percentile, long minDelay, long maxDelay, TimeUnit unit, int budgetPercent) {
+        super(delegate);
+        checkState(percentile > 0 && percentile < 100, "percentile must be between 0 and 100");
+        checkState(minDelay <= maxDelay, "minDelay must not exceed maxDelay");
+        this.percentile = percentile;
+        this.minDelayMicros = unit.toMicros(minDelay);
+        this.maxDelayMicros = unit.toMicros(maxDelay);
+        this.budgetPercent = budgetPercent;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "es-hedged-reads");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> stats.values().forEach(HedgeStats::roll), 10, 10, TimeUnit.SECONDS);
+    }
+
+    public Map<String, Object> hedgeStats() {
+        Map<String, Object> result = new TreeMap<>();
+        stats.forEach((method, hedgeStats) -> result.put(method, hedgeStats.snapshot()));
+        return result;
+    }
+
+    @Override public GetResponse get(GetRequest request) { return hedged("get", () -> delegate.async().get(request)); }
+
+    @Override public MultiGetResponse multiGet(MultiGetRequest request) { return hedged("multiGet", () -> delegate.async().multiGet(request)); }
+
+    @Override public SearchResponse search(SearchRequest request) {
+        return request.scroll() == null ? hedged("search", () -> delegate.async().search(request)) : delegate.search(request);
+    }
+
+    @Override public void close() throws Exception {
+        scheduler.shutdownNow();
+        super.close();
+    }
+
+    private <T> T hedged(String method, Supplier<CompletableFuture<T>> call) {
+        HedgeStats hedgeStats = stats.computeIfAbsent(method, key -> new HedgeStats());
+        Hedge<T> hedge = new Hedge<>(method, hedgeStats);
+        hedgeStats.requests.increment();
+        hedge.launchPrimary(call);
+        try {
+            ScheduledFuture<?> timer = scheduler.schedule(() -> hedge.launchSecondary(call, budgetPercent),
+                hedgeStats.delayMicros(percentile, minDelayMicros, maxDelayMicros), TimeUnit.MICROSECONDS);
+            hedge.result.whenComplete((response, failure) -> timer.cancel(false));
+        } catch (RejectedExecutionException ex) { hedge.abort(new ElasticException("unable to schedule hedged " + method, ex)); }
+        try {
+            return hedge.result.get();
+        } catch (InterruptedException ie) {
+            hedge.result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ElasticException(method + " interrupted", ie);
+        } catch (ExecutionException ee) { throw handleEx(method + " failed", ee.getCause()); }
+    }
+
+    /*
+     * outstanding counts the primary from the start and the secondary from before the timer looks at the result,
+     * so a primary failing while the hedge is being decided never completes the call early. only attempts that
+     * complete successfully record their latency; a cancelled one never ran to completion and would skew the delay.
+     */
+    private static final class Hedge<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private final String method;
+        private final HedgeStats stats;
+        private volatile CompletableFuture<T> primary;
+        private volatile CompletableFuture<T> secondary;
+        private volatile Throwable lastFailure;
+
+        Hedge(String method, HedgeStats stats) {
+            this.method = method;
+            this.stats = stats;
+        }
+
+        void launchPrimary(Supplier<CompletableFuture<T>> call) {
+            long start = System.nanoTime();
+            CompletableFuture<T> attempt;
+            try { attempt = call.get(); } catch (Exception ex) { attempt = ListenerFuture.failed("hedged call failed", ex); }
+            primary = attempt;
+            track(attempt, true, start);
+        }
+
+        void launchSecondary(Supplier<CompletableFuture<T>> call, int budgetPercent) {
+            outstanding.incrementAndGet();
+            try {
+                if (result.isDone() || !stats.tryHedge(budgetPercent)) {
+                    release();
+                    return;
+                }
+                long start = System.nanoTime();
+                CompletableFuture<T> attempt = call.get();
+                secondary = attempt;
+                track(attempt, false, start);
+            } catch (Exception ex) { abort(new ElasticException("unable to launch hedged " + method, ex)); }
+        }
+
+        void abort(Throwable cause) {
+            if (result.completeExceptionally(cause)) {
+                cancel(primary);
+                cancel(secondary);
+            }
+        }
+
+        private void track(CompletableFuture<T> attempt, boolean isPrimary, long start) {
+            attempt.whenComplete((response, failure) -> {
+                if (failure == null) {
+                    stats.recordLatency(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                    if (result.complete(response)) {
+                        if (!isPrimary) { stats.wins.increment(); }
+                        cancel(isPrimary ? secondary : primary);
+                    }
+                }
+                else {
+                    lastFailure = failure;
+                    release();
+                }
+            });
+        }
+
+        private void release() {
+            if (outstanding.decrementAndGet() == 0) {
+                Throwable failure = lastFailure;
+                result.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+            }
+        }
+
+        private static void cancel(CompletableFuture<?> attempt) { if (attempt != null) { attempt.cancel(true); } }
+    }
+
+    private static final class HedgeStats {
+        private final Recorder recorder = new Recorder(3);
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder wins = new LongAdder();
+        private volatile Histogram window = null;
+        private Histogram pending = null;
+
+        void recordLatency(long micros) { recorder.recordValue(micros); }
+
+        synchronized void roll() {
+            Histogram interval = recorder.getIntervalHistogram();
+            if (pending == null) { pending = interval; } else { pending.add(interval); }
+            if (pending.getTotalCount() >= MIN_SAMPLES) {
+                window = pending;
+                pending = null;
+            }
+        }
+
+        long delayMicros(double percentile, long minDelayMicros, long maxDelayMicros) {
+            Histogram current = window;
+            if (current == null) { return maxDelayMicros; }
+            return Math.max(minDelayMicros, Math.min(maxDelayMicros, current.getValueAtPercentile(percentile)));
+        }
+
+        boolean tryHedge(int budgetPercent) {
+            if ((hedges.sum() + 1) * 100 > (requests.sum() + 1) * budgetPercent) { return false; }
+            hedges.increment();
+            return true;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            Histogram current = window;
+            result.put("requests", requests.sum());
+            result.put("hedges", hedges.sum());
+            result.put("hedgeWins", wins.sum());
+            result.put("windowCount", current == null ? 0 : current.getTotalCount());
+            return result;
+        }
+    }
+}
@@ -3,22 +3,35 @@ package io.polyglotted.common.es;
 import com.google.common.base.Splitter;
 import io.polyglotted.common.config.SettingsHolder;
 import io.polyglotted.common.es.rest.EsRestClient;
+import io.polyglotted.common.es.rest.LatencyAwareHostSelector;
 import lombok.SneakyThrows;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.ssl.SSLContexts;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.sniff.ElasticsearchHostsSniffer;
 import org.elasticsearch.client.sniff.SniffOnFailureListener;
 import org.elasticsearch.client.sniff.Sniffer;
+import org.elasticsearch.client.sniff.SnifferBuilder;
 
 import javax.net.ssl.SSLContext;
 import java.security.KeyStore;
+import java.util.Map;
 
 import static com.google.common.collect.Iterables.toArray;
 import static com.google.common.collect.Iterables.transform;
@@ -31,18 +44,59 @@ public class HighLevelConnector {
 
     public static ElasticClient highLevelClient(SettingsHolder settingsHolder) { return highLevelClient(settingsHolder, "es"); }
 
-    @SneakyThrows
     public static ElasticClient highLevelClient(SettingsHolder settingsHolder, String prefix) {
-        RestClientBuilder builder = RestClient.builder(buildHosts(settingsHolder, prefix))
-            .setMaxRetryTimeoutMillis(settingsHolder.intValue(prefix + ".max.retryTimeout.millis", 300_000));
-        if (settingsHolder.booleanValue(prefix + ".insecureSsl", false)) {
-            builder.setHttpClientConfigCallback(clientBuilder -> clientBuilder
-                    .setSSLHostnameVerifier(new NoopHostnameVerifier()).setSSLContext(predeterminedContext()));
+        return GuardedElasticClient.guarded(settingsHolder, prefix, restClient(settingsHolder, prefix));
+    }
+
+    @SneakyThrows
+    private static EsRestClient restClient(SettingsHolder settingsHolder, String prefix) {
+        PoolingNHttpClientConnectionManager connectionManager = connectionManager(settingsHolder, prefix);
+        CredentialsProvider credentialsProvider = credentials(settingsHolder, prefix);
+        long keepAliveMillis = settingsHolder.longValue(prefix + ".http.keepAlive.millis", -1L);
+        int connectTimeout = settingsHolder.intValue(prefix + ".http.connectTimeout.millis", 1000);
+        int socketTimeout = settingsHolder.intValue(prefix + ".http.socketTimeout.millis", 30_000);
+        HttpHost[] hosts = buildHosts(settingsHolder, prefix);
+        LatencyAwareHostSelector hostSelector = hostSelector(settingsHolder, prefix);
+
+        RestClientBuilder builder = RestClient.builder(hosts)
+            .setMaxRetryTimeoutMillis(settingsHolder.intValue(prefix + ".max.retryTimeout.millis", 300_000))
+            .setRequestConfigCallback(config -> config.setConnectTimeout(connectTimeout).setSocketTimeout(socketTimeout))
+            .setHttpClientConfigCallback(clientBuilder -> {
+                clientBuilder.setConnectionManager(connectionManager);
+                if (credentialsProvider != null) { clientBuilder.setDefaultCredentialsProvider(credentialsProvider); }
+                if (keepAliveMillis >= 0) { clientBuilder.setKeepAliveStrategy((response, context) -> keepAliveMillis); }
+                return hostSelector != null ? hostSelector.instrument(clientBuilder) : clientBuilder;
+            });
+
+        boolean compressed = settingsHolder.booleanValue(prefix + ".http.compression", false);
+        int compressionThreshold = settingsHolder.intValue(prefix + ".http.compression.threshold", 1024);
+        if (settingsHolder.booleanValue(prefix + ".sniffer.enabled", false)) {
+            return sniffingClient(builder, connectionManager, hostSelector, hosts, compressed, compressionThreshold);
         }
+        if (hostSelector == null) {
+            return restClient(builder.build(), connectionManager, compressed, compressionThreshold).build();
+        }
+        RestClient restClient = builder.setFailureListener(hostSelector).build();
+        hostSelector.attach(restClient, connectionManager, null, hosts);
+        return restClient(restClient, connectionManager, compressed, compressionThreshold).hostSelector(hostSelector).build();
+    }
 
-        setCredentials(settingsHolder, builder, prefix);
-        return (settingsHolder.booleanValue(prefix + ".sniffer.enabled", false))
-            ? sniffingClient(builder) : new EsRestClient(builder.build(), null);
+    private static EsRestClient.Builder restClient(RestClient restClient, PoolingNHttpClientConnectionManager connectionManager,
+                                                   boolean compressed, int compressionThreshold) {
+        EsRestClient.Builder builder = EsRestClient.builder(restClient).connectionManager(connectionManager);
+        return compressed ? builder.compression(compressionThreshold) : builder;
+    }
+
+    private static LatencyAwareHostSelector hostSelector(SettingsHolder settingsHolder, String prefix) {
+        if (!settingsHolder.booleanValue(prefix + ".http.selector.enabled", false)) { return null; }
+        Map<String, String> zones = Splitter.on(",").omitEmptyStrings().trimResults().withKeyValueSeparator("=")
+            .split(settingsHolder.stringValue(prefix + ".http.node.zones", ""));
+        return new LatencyAwareHostSelector(settingsHolder.stringValue(prefix + ".http.zone", null), zones,
+            settingsHolder.longValue(prefix + ".http.selector.refresh.millis", 1_000L),
+            settingsHolder.intValue(prefix + ".http.selector.outlier.factor", 3),
+            settingsHolder.longValue(prefix + ".http.selector.ejection.millis", 30_000L),
+            settingsHolder.intValue(prefix + ".http.selector.failure.threshold", 3),
+            settingsHolder.intValue(prefix + ".http.selector.min.active", 2));
     }
 
     @SuppressWarnings("StaticPseudoFunctionalStyleMethod")
@@ -54,22 +108,47 @@ public class HighLevelConnector {
         return toArray(transform(masterNodes, node -> new HttpHost(requireNonNull(node), port, scheme)), HttpHost.class);
     }
 
-    private static void setCredentials(SettingsHolder settingsHolder, RestClientBuilder builder, String prefix) {
+    private static PoolingNHttpClientConnectionManager connectionManager(SettingsHolder settingsHolder, String prefix) throws IOReactorException {
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+            .setIoThreadCount(settingsHolder.intValue(prefix + ".http.ioThreads", Runtime.getRuntime().availableProcessors()))
+            .setConnectTimeout(settingsHolder.intValue(prefix + ".http.connectTimeout.millis", 1000))
+            .setSoKeepAlive(true).build();
+        PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(
+            new DefaultConnectingIOReactor(reactorConfig), sessionStrategies(settingsHolder.booleanValue(prefix + ".insecureSsl", false)));
+        connectionManager.setDefaultMaxPerRoute(settingsHolder.intValue(prefix + ".http.max.connections.perRoute", 10));
+        connectionManager.setMaxTotal(settingsHolder.intValue(prefix + ".http.max.connections.total", 30));
+        return connectionManager;
+    }
+
+    private static Registry<SchemeIOSessionStrategy> sessionStrategies(boolean insecureSsl) {
+        return RegistryBuilder.<SchemeIOSessionStrategy>create().register("http", NoopIOSessionStrategy.INSTANCE)
+            .register("https", insecureSsl ? new SSLIOSessionStrategy(predeterminedContext(), new NoopHostnameVerifier())
+                : SSLIOSessionStrategy.getDefaultStrategy()).build();
+    }
+
+    private static CredentialsProvider credentials(SettingsHolder settingsHolder, String prefix) {
         String userName = settingsHolder.stringValue(prefix + ".auth.username", null);
         String password = settingsHolder.stringValue(prefix + ".auth.password", null);
         if (nonNull(userName) && nonNull(password)) {
             final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
             credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(userName, password));
-            builder.setHttpClientConfigCallback(callback -> callback.setDefaultCredentialsProvider(credentialsProvider));
+            return credentialsProvider;
         }
+        return null;
     }
 
-    private static EsRestClient sniffingClient(RestClientBuilder builder) {
+    private static EsRestClient sniffingClient(RestClientBuilder builder, PoolingNHttpClientConnectionManager connectionManager,
+                                               LatencyAwareHostSelector hostSelector, HttpHost[] hosts, boolean compressed, int compressionThreshold) {
         SniffOnFailureListener sniffOnFailureListener = new SniffOnFailureListener();
-        RestClient restClient = builder.setFailureListener(sniffOnFailureListener).build();
-        Sniffer sniffer = Sniffer.builder(restClient).setSniffAfterFailureDelayMillis(30000).build();
+        RestClient restClient = builder.setFailureListener(hostSelector != null ? hostSelector : sniffOnFailureListener).build();
+        SnifferBuilder snifferBuilder = Sniffer.builder(restClient).setSniffAfterFailureDelayMillis(30000);
+        if (hostSelector != null) {
+            snifferBuilder.setHostsSniffer(hostSelector.tracking(new ElasticsearchHostsSniffer(restClient)));
+            hostSelector.attach(restClient, connectionManager, sniffOnFailureListener, hosts);
+        }
+        Sniffer sniffer = snifferBuilder.build();
         sniffOnFailureListener.setSniffer(sniffer);
-        return new EsRestClient(restClient, sniffer);
+        return restClient(restClient, connectionManager, compressed, compressionThreshold).sniffer(sniffer).hostSelector(hostSelector).build();
     }
 
     @SneakyThrows private static SSLContext predeterminedContext() {
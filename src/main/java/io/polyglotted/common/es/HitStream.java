@@ -0,0 +1,174 @@
+package io.polyglotted.common.es;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchModule;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.polyglotted.common.es.ElasticException.handleEx;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static org.elasticsearch.search.sort.SortOrder.ASC;
+
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public abstract class HitStream implements Iterator<SearchHit>, AutoCloseable {
+    protected final AsyncElasticClient client;
+    private Iterator<SearchHit> current = Collections.emptyIterator();
+    private CompletableFuture<SearchResponse> next;
+    private long consumed = 0;
+    private boolean closed = false;
+
+    private HitStream(ElasticClient client, SearchRequest request) {
+        this.client = client.async();
+        this.next = this.client.search(request);
+    }
+
+    public static HitStream scroll(ElasticClient client, SearchRequest request, TimeValue keepAlive) {
+        return new ScrollHitStream(client, copyOf(request).scroll(keepAlive), keepAlive);
+    }
+
+    public static HitStream searchAfter(ElasticClient client, SearchRequest request, String tiebreaker) {
+        SearchRequest copy = copyOf(request);
+        SearchSourceBuilder source = copy.source() == null ? new SearchSourceBuilder() : copy.source();
+        if (!hasSortOn(source, tiebreaker)) { source.sort(tiebreaker, ASC); }
+        return new SearchAfterHitStream(client, copy.source(source));
+    }
+
+    public Stream<SearchHit> stream() { return StreamSupport.stream(spliteratorUnknownSize(this, ORDERED | NONNULL), false).onClose(this::close); }
+
+    @Override public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (next == null) { return false; }
+            load(await(next));
+        }
+        return true;
+    }
+
+    @Override public SearchHit next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        consumed++;
+        return current.next();
+    }
+
+    @Override public void close() {
+        if (closed) { return; }
+        closed = true;
+        current = Collections.emptyIterator();
+        if (next != null) {
+            next.whenComplete((page, ex) -> release(page));
+            next = null;
+        }
+        else { release(null); }
+    }
+
+    protected abstract CompletableFuture<SearchResponse> fetchNext(SearchResponse page, SearchHit lastHit);
+
+    protected abstract void release(SearchResponse page);
+
+    private void load(SearchResponse page) {
+        SearchHit[] hits = page.getHits().getHits();
+        boolean exhausted = hits.length == 0 || consumed + hits.length >= page.getHits().getTotalHits();
+        current = Arrays.asList(hits).iterator();
+        next = exhausted ? null : fetchNext(page, hits[hits.length - 1]);
+        if (exhausted) { release(page); }
+    }
+
+    private SearchResponse await(CompletableFuture<SearchResponse> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new ElasticException("hitStream interrupted", ie);
+        } catch (ExecutionException ee) {
+            next = null;
+            close();
+            throw handleEx("hitStream failed", ee.getCause());
+        }
+    }
+
+    private static SearchRequest copyOf(SearchRequest request) {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            request.writeTo(out);
+            SearchRequest copy = new SearchRequest();
+            copy.readFrom(new NamedWriteableAwareStreamInput(out.bytes().streamInput(), SearchRegistry.INSTANCE));
+            return copy;
+        } catch (IOException ex) { throw handleEx("failed to copy search request", ex); }
+    }
+
+    private static boolean hasSortOn(SearchSourceBuilder source, String field) {
+        if (source.sorts() == null) { return false; }
+        for (SortBuilder<?> sort : source.sorts()) {
+            if (sort instanceof FieldSortBuilder && field.equals(((FieldSortBuilder) sort).getFieldName())) { return true; }
+        }
+        return false;
+    }
+
+    private static final class SearchRegistry {
+        private static final NamedWriteableRegistry INSTANCE = new NamedWriteableRegistry(
+            new SearchModule(Settings.EMPTY, false, Collections.emptyList()).getNamedWriteables());
+    }
+
+    private static final class ScrollHitStream extends HitStream {
+        private final TimeValue keepAlive;
+        private String scrollId;
+
+        ScrollHitStream(ElasticClient client, SearchRequest request, TimeValue keepAlive) {
+            super(client, request);
+            this.keepAlive = keepAlive;
+        }
+
+        @Override protected CompletableFuture<SearchResponse> fetchNext(SearchResponse page, SearchHit lastHit) {
+            scrollId = page.getScrollId();
+            return client.searchScroll(new SearchScrollRequest(scrollId).scroll(keepAlive));
+        }
+
+        @Override protected synchronized void release(SearchResponse page) {
+            String toClear = page == null ? scrollId : page.getScrollId();
+            if (toClear == null) { return; }
+            ClearScrollRequest request = new ClearScrollRequest();
+            request.addScrollId(toClear);
+            client.clearScroll(request).whenComplete((r, ex) -> { if (ex != null) log.warn("failed to clear scroll", ex); });
+            scrollId = null;
+        }
+    }
+
+    private static final class SearchAfterHitStream extends HitStream {
+        private final SearchRequest request;
+
+        SearchAfterHitStream(ElasticClient client, SearchRequest request) {
+            super(client, request);
+            this.request = request;
+        }
+
+        @Override protected CompletableFuture<SearchResponse> fetchNext(SearchResponse page, SearchHit lastHit) {
+            request.source().searchAfter(lastHit.getSortValues());
+            return client.search(request);
+        }
+
+        @Override protected void release(SearchResponse page) { }
+    }
+}
@@ -0,0 +1,392 @@
+package io.polyglotted.common.es;
+
+import com.google.common.base.Joiner;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class InstrumentedElasticClient extends ForwardingElasticClient {
+    private static final Joiner COMMA = Joiner.on(",");
+    private static final ToLongFunction<Object> NO_BYTES = result -> -1;
+    private final ConcurrentMap<String, CallStats> stats = new ConcurrentHashMap<>();
+    private final boolean perIndex;
+    private volatile AsyncElasticClient asyncClient;
+
+    public InstrumentedElasticClient(ElasticClient delegate) { this(delegate, true); }
+
+    public InstrumentedElasticClient(ElasticClient delegate, boolean perIndex) {
+        super(delegate);
+        this.perIndex = perIndex;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new TreeMap<>();
+        stats.forEach((key, callStats) -> result.put(key, callStats.snapshot()));
+        return result;
+    }
+
+    public void reset() { stats.clear(); }
+
+    @Override public AsyncElasticClient async() {
+        AsyncElasticClient result = asyncClient;
+        if (result == null) { asyncClient = result = new InstrumentedAsyncClient(delegate.async()); }
+        return result;
+    }
+
+    @Override public boolean indexExists(String index) { return call("indexExists", () -> delegate.indexExists(index)); }
+
+    @Override public boolean typeExists(String index, String... types) { return call("typeExists", () -> delegate.typeExists(index, types)); }
+
+    @Override public Set<String> getIndices(String alias) { return call("getIndices", () -> delegate.getIndices(alias)); }
+
+    @Override public String getIndexMeta(String... indices) { return call("getIndexMeta", () -> delegate.getIndexMeta(indices)); }
+
+    @Override public String getSettings(String... indices) { return call("getSettings", () -> delegate.getSettings(indices)); }
+
+    @Override public String getMapping(String index, String type) { return call("getMapping", () -> delegate.getMapping(index, type)); }
+
+    @Override public void openIndex(String... indices) { run("openIndex", () -> delegate.openIndex(indices)); }
+
+    @Override public void closeIndex(String... indices) { run("closeIndex", () -> delegate.closeIndex(indices)); }
+
+    @Override public void createIndex(CreateIndexRequest request) { run("createIndex", () -> delegate.createIndex(request)); }
+
+    @Override public void createIndex(String index, String resource) { run("createIndex", () -> delegate.createIndex(index, resource)); }
+
+    @Override public void updateAlias(IndicesAliasesRequest request) { run("updateAlias", () -> delegate.updateAlias(request)); }
+
+    @Override public void updateSettings(UpdateSettingsRequest request) { run("updateSettings", () -> delegate.updateSettings(request)); }
+
+    @Override public void putMapping(PutMappingRequest request) { run("putMapping", () -> delegate.putMapping(request)); }
+
+    @Override public void forceRefresh(String... indices) { run("forceRefresh", () -> delegate.forceRefresh(indices)); }
+
+    @Override public void dropIndex(String... indices) { run("dropIndex", () -> delegate.dropIndex(indices)); }
+
+    @Override public void waitForStatus(String status) { run("waitForStatus", () -> delegate.waitForStatus(status)); }
+
+    @Override public Map<String, Object> waitForStatus(HealthWait wait) { return call("waitForStatus", () -> delegate.waitForStatus(wait)); }
+
+    @Override public Map<String, Object> clusterHealth() { return call("clusterHealth", delegate::clusterHealth); }
+
+    @Override public void buildPipeline(String id, String resource) { run("buildPipeline", () -> delegate.buildPipeline(id, resource)); }
+
+    @Override public boolean pipelineExists(String id) { return call("pipelineExists", () -> delegate.pipelineExists(id)); }
+
+    @Override public void deletePipeline(String id) { run("deletePipeline", () -> delegate.deletePipeline(id)); }
+
+    @Override public void putTemplate(String name, String body) { run("putTemplate", () -> delegate.putTemplate(name, body)); }
+
+    @Override public boolean templateExists(String name) { return call("templateExists", () -> delegate.templateExists(name)); }
+
+    @Override public void deleteTemplate(String name) { run("deleteTemplate", () -> delegate.deleteTemplate(name)); }
+
+    @Override public IndexResponse index(IndexRequest request) {
+        return call("index", request.index(), sourceBytes(request), () -> delegate.index(request), NO_BYTES);
+    }
+
+    @Override public UpdateResponse update(UpdateRequest request) {
+        return call("update", request.index(), -1, () -> delegate.update(request), NO_BYTES);
+    }
+
+    @Override public DeleteResponse delete(DeleteRequest request) {
+        return call("delete", request.index(), -1, () -> delegate.delete(request), NO_BYTES);
+    }
+
+    @Override public BulkResponse bulk(BulkRequest request) {
+        return call("bulk", null, request.estimatedSizeInBytes(), () -> delegate.bulk(request), NO_BYTES);
+    }
+
+    @Override public void bulkAsync(BulkRequest request, ActionListener<BulkResponse> listener) {
+        List<CallStats> targets = begin("bulkAsync", null);
+        long start = System.nanoTime();
+        AtomicBoolean ended = new AtomicBoolean();
+        try {
+            delegate.bulkAsync(request, new ActionListener<BulkResponse>() {
+                @Override public void onResponse(BulkResponse response) {
+                    if (ended.compareAndSet(false, true)) { end(targets, start, null, request.estimatedSizeInBytes(), -1); }
+                    listener.onResponse(response);
+                }
+
+                @Override public void onFailure(Exception ex) {
+                    if (ended.compareAndSet(false, true)) { end(targets, start, ex, request.estimatedSizeInBytes(), -1); }
+                    listener.onFailure(ex);
+                }
+            });
+        } catch (RuntimeException ex) {
+            if (ended.compareAndSet(false, true)) { end(targets, start, ex, request.estimatedSizeInBytes(), -1); }
+            throw ex;
+        }
+    }
+
+    @Override public GetResponse get(GetRequest request) {
+        return call("get", request.index(), -1, () -> delegate.get(request), InstrumentedElasticClient::getBytes);
+    }
+
+    @Override public MultiGetResponse multiGet(MultiGetRequest request) {
+        return call("multiGet", null, -1, () -> delegate.multiGet(request), InstrumentedElasticClient::multiGetBytes);
+    }
+
+    @Override public SearchResponse search(SearchRequest request) {
+        return call("search", indexOf(request.indices()), -1, () -> delegate.search(request), InstrumentedElasticClient::searchBytes);
+    }
+
+    @Override public MultiSearchResponse multiSearch(MultiSearchRequest request) {
+        return call("multiSearch", null, -1, () -> delegate.multiSearch(request), NO_BYTES);
+    }
+
+    @Override public SearchResponse searchScroll(SearchScrollRequest request) {
+        return call("searchScroll", null, -1, () -> delegate.searchScroll(request), InstrumentedElasticClient::searchBytes);
+    }
+
+    @Override public ClearScrollResponse clearScroll(ClearScrollRequest request) { return call("clearScroll", () -> delegate.clearScroll(request)); }
+
+    @Override public long deleteByQuery(String index, QueryBuilder query) {
+        return call("deleteByQuery", index, -1, () -> delegate.deleteByQuery(index, query), NO_BYTES);
+    }
+
+    @Override public String simpleGet(String endpoint, String methodName) { return call(methodName, () -> delegate.simpleGet(endpoint, methodName)); }
+
+    @Override public Map<String, Object> filteredGet(String endpoint, String methodName, String... filterPaths) {
+        return call(methodName, () -> delegate.filteredGet(endpoint, methodName, filterPaths));
+    }
+
+    @Override public String simplePost(String endpoint, String body, String methodName) {
+        return call(methodName, null, body == null ? -1 : body.length(), () -> delegate.simplePost(endpoint, body, methodName), NO_BYTES);
+    }
+
+    @Override public String simplePut(String endpoint, String body, String methodName) {
+        return call(methodName, null, body == null ? -1 : body.length(), () -> delegate.simplePut(endpoint, body, methodName), NO_BYTES);
+    }
+
+    @Override public void simpleDelete(String endpoint, String methodName) { run(methodName, () -> delegate.simpleDelete(endpoint, methodName)); }
+
+    private void run(String method, Runnable action) { call(method, () -> { action.run(); return null; }); }
+
+    private <T> T call(String method, Supplier<T> action) { return call(method, null, -1, action, NO_BYTES); }
+
+    private <T> T call(String method, String index, long requestBytes, Supplier<T> action, ToLongFunction<? super T> responseBytes) {
+        List<CallStats> targets = begin(method, index);
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException ex) {
+            end(targets, start, ex, requestBytes, -1);
+            throw ex;
+        }
+        end(targets, start, null, requestBytes, bytesOf(responseBytes, result));
+        return result;
+    }
+
+    private <T> CompletableFuture<T> callAsync(String method, String index, long requestBytes, Supplier<CompletableFuture<T>> action,
+                                               ToLongFunction<? super T> responseBytes) {
+        List<CallStats> targets = begin(method, index);
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = action.get();
+        } catch (RuntimeException ex) {
+            end(targets, start, ex, requestBytes, -1);
+            throw ex;
+        }
+        return future.whenComplete((result, ex) -> end(targets, start, ex, requestBytes, ex == null ? bytesOf(responseBytes, result) : -1));
+    }
+
+    private List<CallStats> begin(String method, String index) {
+        CallStats methodStats = stats.computeIfAbsent(method, key -> new CallStats());
+        List<CallStats> targets = (perIndex && index != null) ?
+            Arrays.asList(methodStats, stats.computeIfAbsent(method + "[" + index + "]", key -> new CallStats())) : Collections.singletonList(methodStats);
+        for (CallStats target : targets) { target.inFlight.incrementAndGet(); }
+        return targets;
+    }
+
+    private static void end(List<CallStats> targets, long start, Throwable failure, long requestBytes, long responseBytes) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        for (CallStats target : targets) { target.record(micros, failure, requestBytes, responseBytes); }
+    }
+
+    private static <T> long bytesOf(ToLongFunction<? super T> responseBytes, T result) {
+        try {
+            return result == null ? -1 : responseBytes.applyAsLong(result);
+        } catch (RuntimeException ex) {
+            log.debug("unable to measure response of type {}", result.getClass().getSimpleName(), ex);
+            return -1;
+        }
+    }
+
+    private static String indexOf(String[] indices) { return indices == null || indices.length == 0 ? "_all" : COMMA.join(indices); }
+
+    private static long sourceBytes(IndexRequest request) { return request.source() == null ? -1 : request.source().length(); }
+
+    private static long getBytes(GetResponse response) {
+        return response.isExists() && !response.isSourceEmpty() ? response.getSourceAsBytesRef().length() : 0;
+    }
+
+    private static long multiGetBytes(MultiGetResponse response) {
+        long bytes = 0;
+        for (MultiGetItemResponse item : response.getResponses()) { if (!item.isFailed()) { bytes += getBytes(item.getResponse()); } }
+        return bytes;
+    }
+
+    private static long searchBytes(SearchResponse response) {
+        long bytes = 0;
+        for (SearchHit hit : response.getHits().getHits()) { if (hit.getSourceRef() != null) { bytes += hit.getSourceRef().length(); } }
+        return bytes;
+    }
+
+    private static String causeOf(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ElasticException) && cause.getCause() != null) { cause = cause.getCause(); }
+        return cause.getClass().getSimpleName();
+    }
+
+    private static final class CallStats {
+        private final Histogram latencyMicros = new ConcurrentHistogram(3);
+        private final Histogram requestBytes = new ConcurrentHistogram(3);
+        private final Histogram responseBytes = new ConcurrentHistogram(3);
+        private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        void record(long micros, Throwable failure, long request, long response) {
+            inFlight.decrementAndGet();
+            latencyMicros.recordValue(micros);
+            if (request >= 0) { requestBytes.recordValue(request); }
+            if (response >= 0) { responseBytes.recordValue(response); }
+            if (failure != null) { errors.computeIfAbsent(causeOf(failure), key -> new LongAdder()).increment(); }
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            Histogram latency = latencyMicros.copy();
+            result.put("count", latency.getTotalCount());
+            result.put("inFlight", inFlight.get());
+            result.put("errors", errors.values().stream().mapToLong(LongAdder::sum).sum());
+            result.put("latencyMicros", percentiles(latency));
+            if (requestBytes.getTotalCount() > 0) { result.put("requestBytes", percentiles(requestBytes.copy())); }
+            if (responseBytes.getTotalCount() > 0) { result.put("responseBytes", percentiles(responseBytes.copy())); }
+            Map<String, Long> causes = new TreeMap<>();
+            errors.forEach((cause, count) -> causes.put(cause, count.sum()));
+            result.put("errorCauses", causes);
+            return result;
+        }
+
+        private static Map<String, Object> percentiles(Histogram histogram) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("mean", histogram.getMean());
+            result.put("p50", histogram.getValueAtPercentile(50));
+            result.put("p90", histogram.getValueAtPercentile(90));
+            result.put("p99", histogram.getValueAtPercentile(99));
+            result.put("p999", histogram.getValueAtPercentile(99.9));
+            result.put("max", histogram.getMaxValue());
+            return result;
+        }
+    }
+
+    private final class InstrumentedAsyncClient implements AsyncElasticClient {
+        private final AsyncElasticClient async;
+
+        InstrumentedAsyncClient(AsyncElasticClient async) { this.async = async; }
+
+        @Override public CompletableFuture<Boolean> indexExists(String index) {
+            return callAsync("indexExists", null, -1, () -> async.indexExists(index), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<Set<String>> getIndices(String alias) {
+            return callAsync("getIndices", null, -1, () -> async.getIndices(alias), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<Void> forceRefresh(String... indices) {
+            return callAsync("forceRefresh", null, -1, () -> async.forceRefresh(indices), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<Map<String, Object>> clusterHealth() {
+            return callAsync("clusterHealth", null, -1, async::clusterHealth, NO_BYTES);
+        }
+
+        @Override public CompletableFuture<Map<String, Object>> waitForStatus(HealthWait wait) {
+            return callAsync("waitForStatus", null, -1, () -> async.waitForStatus(wait), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<IndexResponse> index(IndexRequest request) {
+            return callAsync("index", request.index(), sourceBytes(request), () -> async.index(request), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<UpdateResponse> update(UpdateRequest request) {
+            return callAsync("update", request.index(), -1, () -> async.update(request), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<DeleteResponse> delete(DeleteRequest request) {
+            return callAsync("delete", request.index(), -1, () -> async.delete(request), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<BulkResponse> bulk(BulkRequest request) {
+            return callAsync("bulk", null, request.estimatedSizeInBytes(), () -> async.bulk(request), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<GetResponse> get(GetRequest request) {
+            return callAsync("get", request.index(), -1, () -> async.get(request), InstrumentedElasticClient::getBytes);
+        }
+
+        @Override public CompletableFuture<MultiGetResponse> multiGet(MultiGetRequest request) {
+            return callAsync("multiGet", null, -1, () -> async.multiGet(request), InstrumentedElasticClient::multiGetBytes);
+        }
+
+        @Override public CompletableFuture<SearchResponse> search(SearchRequest request) {
+            return callAsync("search", indexOf(request.indices()), -1, () -> async.search(request), InstrumentedElasticClient::searchBytes);
+        }
+
+        @Override public CompletableFuture<MultiSearchResponse> multiSearch(MultiSearchRequest request) {
+            return callAsync("multiSearch", null, -1, () -> async.multiSearch(request), NO_BYTES);
+        }
+
+        @Override public CompletableFuture<SearchResponse> searchScroll(SearchScrollRequest request) {
+            return callAsync("searchScroll", null, -1, () -> async.searchScroll(request), InstrumentedElasticClient::searchBytes);
+        }
+
+        @Override public CompletableFuture<ClearScrollResponse> clearScroll(ClearScrollRequest request) {
+            return callAsync("clearScroll", null, -1, () -> async.clearScroll(request), NO_BYTES);
+        }
+    }
+}
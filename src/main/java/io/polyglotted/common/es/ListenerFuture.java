@@ -0,0 +1,30 @@
+package io.polyglotted.common.es;
+
+import lombok.RequiredArgsConstructor;
+import org.elasticsearch.action.ActionListener;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static io.polyglotted.common.es.ElasticException.handleEx;
+
+@RequiredArgsConstructor
+public final class ListenerFuture<T> extends CompletableFuture<T> implements ActionListener<T> {
+    private final String message;
+
+    public static <T> CompletableFuture<T> listen(String message, Consumer<ActionListener<T>> action) {
+        ListenerFuture<T> future = new ListenerFuture<>(message);
+        try { action.accept(future); } catch (Exception ex) { future.onFailure(ex); }
+        return future;
+    }
+
+    public static <T> CompletableFuture<T> failed(String message, Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(handleEx(message, cause));
+        return future;
+    }
+
+    @Override public void onResponse(T response) { complete(response); }
+
+    @Override public void onFailure(Exception ex) { completeExceptionally(handleEx(message, ex)); }
+}
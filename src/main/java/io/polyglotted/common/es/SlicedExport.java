@@ -0,0 +1,164 @@
+package io.polyglotted.common.es;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+import static io.polyglotted.common.es.ElasticException.handleEx;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public abstract class SlicedExport {
+
+    public static void export(ElasticClient client, SearchRequest request, TimeValue keepAlive, int slices, IntFunction<Consumer<SearchHit>> sinks) {
+        checkState(slices > 0, "slices must be positive");
+        ExecutorService executor = sliceExecutor(slices);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        try {
+            List<Future<?>> futures = new ArrayList<>(slices);
+            for (int i = 0; i < slices; i++) {
+                SearchRequest slice = sliceRequest(request, i, slices);
+                Consumer<SearchHit> sink = sinks.apply(i);
+                futures.add(executor.submit(() -> drain(client, slice, keepAlive, sink, cancelled)));
+            }
+            for (Future<?> future : futures) { future.get(); }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ElasticException("sliced export interrupted", ie);
+        } catch (ExecutionException ee) {
+            throw handleEx("sliced export failed", ee.getCause());
+        } finally {
+            cancelled.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    public static Stream<SearchHit> stream(ElasticClient client, SearchRequest request, TimeValue keepAlive, int slices, int bufferSize) {
+        checkState(slices > 0, "slices must be positive");
+        MergedIterator iterator = new MergedIterator(slices, bufferSize);
+        for (int i = 0; i < slices; i++) {
+            SearchRequest slice = sliceRequest(request, i, slices);
+            iterator.workers.add(iterator.executor.submit(() -> {
+                try {
+                    drain(client, slice, keepAlive, iterator::put, iterator.cancelled);
+                    iterator.put(MergedIterator.DONE);
+                } catch (Exception ex) { iterator.fail(ex); }
+            }));
+        }
+        return StreamSupport.stream(spliteratorUnknownSize(iterator, NONNULL), false).onClose(iterator::close);
+    }
+
+    static SearchRequest sliceRequest(SearchRequest request, int id, int max) {
+        SearchSourceBuilder source = request.source() == null ? new SearchSourceBuilder() : request.source();
+        return new SearchRequest(request.indices(), max > 1 ? source.copyWithNewSlice(new SliceBuilder(id, max)) : source)
+            .types(request.types()).routing(request.routing()).preference(request.preference()).searchType(request.searchType())
+            .indicesOptions(request.indicesOptions()).requestCache(request.requestCache());
+    }
+
+    private static void drain(ElasticClient client, SearchRequest request, TimeValue keepAlive, Consumer<SearchHit> sink, AtomicBoolean cancelled) {
+        try (HitStream hits = HitStream.scroll(client, request, keepAlive)) {
+            while (!cancelled.get() && hits.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) { throw new ElasticException("slice export interrupted"); }
+                sink.accept(hits.next());
+            }
+        }
+    }
+
+    private static ExecutorService sliceExecutor(int slices) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(slices, r -> {
+            Thread thread = new Thread(r, "sliced-export-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class MergedIterator implements Iterator<SearchHit> {
+        private static final Object DONE = new Object();
+        private final ExecutorService executor;
+        private final List<Future<?>> workers = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final BlockingQueue<Object> queue;
+        private int remaining;
+        private Object next;
+
+        MergedIterator(int slices, int bufferSize) {
+            this.executor = sliceExecutor(slices);
+            this.queue = new ArrayBlockingQueue<>(Math.max(bufferSize, slices));
+            this.remaining = slices;
+        }
+
+        @Override public boolean hasNext() {
+            while (next == null && remaining > 0) {
+                Object item = take();
+                if (item == DONE) { if (--remaining == 0) { executor.shutdown(); } }
+                else if (item instanceof Exception) {
+                    close();
+                    throw handleEx("sliced export failed", (Exception) item);
+                }
+                else { next = item; }
+            }
+            return next != null;
+        }
+
+        @Override public SearchHit next() {
+            if (!hasNext()) { throw new NoSuchElementException(); }
+            SearchHit result = (SearchHit) next;
+            next = null;
+            return result;
+        }
+
+        void close() {
+            remaining = 0;
+            cancelled.set(true);
+            for (Future<?> worker : workers) { worker.cancel(true); }
+            executor.shutdownNow();
+            queue.clear();
+        }
+
+        void put(Object item) {
+            try { queue.put(item); } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new ElasticException("slice export interrupted", ie);
+            }
+        }
+
+        void fail(Exception ex) {
+            if (executor.isShutdown()) { return; }
+            log.warn("slice export failed", ex);
+            try { queue.put(ex); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+        }
+
+        private Object take() {
+            try { return queue.take(); } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new ElasticException("sliced export interrupted", ie);
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package io.polyglotted.common.es;
 
 import io.polyglotted.common.config.SettingsHolder;
+import io.polyglotted.common.es.discovery.Ec2HostsProvider;
+import io.polyglotted.common.es.discovery.Ec2NodesRefresher;
 import io.polyglotted.common.es.transport.EsTransportClient;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -8,6 +10,7 @@ import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.transport.client.PreBuiltTransportClient;
 
 import java.io.IOException;
@@ -20,8 +23,10 @@ import static com.google.common.collect.Lists.newArrayList;
 import static io.polyglotted.common.es.discovery.Ec2HostsProvider.buildSettings;
 import static io.polyglotted.common.es.discovery.Ec2HostsProvider.fetchEc2Addresses;
 import static java.net.InetAddress.getByName;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.elasticsearch.common.settings.Setting.Property.NodeScope;
 import static org.elasticsearch.common.settings.Setting.Property.Shared;
+import static org.elasticsearch.common.unit.TimeValue.timeValueSeconds;
 
 @Slf4j
 @SuppressWarnings("unused")
@@ -30,13 +35,24 @@ public abstract class TransportConnector {
     private static final Setting<List<String>> MASTER_NODES = Setting.listSetting("master.nodes", newArrayList("localhost"), String::toString, NodeScope);
     private static final Setting<String> EC2_DISCOVERY = new Setting<>("discovery.type", "", s -> s.toLowerCase(Locale.ROOT), NodeScope, Shared);
     private static final Setting<String> EC2_HOST_PROVIDER = new Setting<>("discovery.zen.hosts_provider", EC2_DISCOVERY, s -> s.toLowerCase(Locale.ROOT), NodeScope);
+    private static final Setting<TimeValue> EC2_REFRESH_INTERVAL = Setting.timeSetting("discovery.ec2.refresh_interval", timeValueSeconds(60), NodeScope);
 
     @SneakyThrows
     public static ElasticClient transportClient(SettingsHolder settingsHolder) {
         Settings settings = buildSettings(checkNotNull(settingsHolder));
-        List<String> masterNodes = ((EC2_DISCOVERY.exists(settings) || EC2_HOST_PROVIDER.exists(settings))
-            && "ec2".equals(EC2_HOST_PROVIDER.get(settings))) ? fetchEc2Addresses(settings) : MASTER_NODES.get(settings);
-        return new EsTransportClient(createFrom(settingsHolder, settings, masterNodes));
+        if (!(EC2_DISCOVERY.exists(settings) || EC2_HOST_PROVIDER.exists(settings)) || !"ec2".equals(EC2_HOST_PROVIDER.get(settings))) {
+            return GuardedElasticClient.guarded(settingsHolder, "es", new EsTransportClient(createFrom(settingsHolder, settings, MASTER_NODES.get(settings))));
+        }
+        long refreshMillis = EC2_REFRESH_INTERVAL.get(settings).millis();
+        if (refreshMillis <= 0) {
+            return GuardedElasticClient.guarded(settingsHolder, "es", new EsTransportClient(createFrom(settingsHolder, settings, fetchEc2Addresses(settings))));
+        }
+        Ec2HostsProvider provider = new Ec2HostsProvider(settings);
+        try {
+            TransportClient client = createFrom(settingsHolder, settings, provider.fetchAddresses());
+            Ec2NodesRefresher refresher = Ec2NodesRefresher.start(provider, client, TRANSPORT_PORT_SETTING.get(settings), refreshMillis, MILLISECONDS);
+            return GuardedElasticClient.guarded(settingsHolder, "es", new EsTransportClient(client, refresher));
+        } catch (Exception ex) { provider.close(); throw ex; }
     }
 
     private static TransportClient createFrom(SettingsHolder holder, Settings settings, List<String> masterNodes) throws IOException {
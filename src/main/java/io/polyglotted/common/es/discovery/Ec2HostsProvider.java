@@ -33,8 +33,10 @@ public final class Ec2HostsProvider implements Closeable {
         try (Ec2HostsProvider provider = new Ec2HostsProvider(settings)) { return provider.fetchAddresses(); }
     }
 
-    private Ec2HostsProvider(Settings settings) {
-        this.client = Ec2ServiceImpl.client(settings);
+    public Ec2HostsProvider(Settings settings) { this(Ec2ServiceImpl.client(settings), settings); }
+
+    public Ec2HostsProvider(AmazonEC2 client, Settings settings) {
+        this.client = client;
         this.hostType = DISCOVERY_EC2.HOST_TYPE_SETTING.get(settings);
         this.bindAnyGroup = DISCOVERY_EC2.ANY_GROUP_SETTING.get(settings);
         this.groups = newHashSet(DISCOVERY_EC2.GROUPS_SETTING.get(settings));
@@ -52,7 +54,7 @@ public final class Ec2HostsProvider implements Closeable {
         IdleConnectionReaper.shutdown();
     }
 
-    private List<String> fetchAddresses() {
+    public List<String> fetchAddresses() {
         List<String> addresses = new ArrayList<>();
         DescribeInstancesResult descInstances;
         try {
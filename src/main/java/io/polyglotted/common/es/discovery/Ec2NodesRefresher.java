@@ -0,0 +1,95 @@
+package io.polyglotted.common.es.discovery;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.transport.TransportAddress;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+
+/*
+ * keeps the transport seeds in line with ec2 so that replaced nodes are picked up even when no original seed
+ * survives for sniffing. an empty or failed describe, or an address that does not resolve, never removes nodes.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class Ec2NodesRefresher implements Closeable {
+    private final Ec2HostsProvider provider;
+    private final TransportClient client;
+    private final int port;
+    private final ScheduledExecutorService scheduler;
+
+    private Ec2NodesRefresher(Ec2HostsProvider provider, TransportClient client, int port) {
+        this.provider = provider;
+        this.client = client;
+        this.port = port;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "es-ec2-discovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Ec2NodesRefresher start(Ec2HostsProvider provider, TransportClient client, int port, long interval, TimeUnit unit) {
+        checkState(interval > 0, "refresh interval must be positive");
+        Ec2NodesRefresher refresher = new Ec2NodesRefresher(provider, client, port);
+        refresher.scheduler.scheduleWithFixedDelay(refresher::refreshSafely, interval, interval, unit);
+        return refresher;
+    }
+
+    @Override public void close() throws IOException {
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) { log.warn("ec2 transport node refresh did not stop in time"); }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally { provider.close(); }
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (Exception ex) { log.warn("ec2 transport node refresh failed", ex); }
+    }
+
+    public synchronized void refresh() {
+        Set<TransportAddress> discovered = new LinkedHashSet<>();
+        boolean unresolved = false;
+        for (String address : provider.fetchAddresses()) {
+            try {
+                discovered.add(new InetSocketTransportAddress(InetAddress.getByName(address), port));
+            } catch (UnknownHostException ex) {
+                log.warn("unable to resolve ec2 discovered node {}: {}", address, ex.getMessage());
+                unresolved = true;
+            }
+        }
+        if (discovered.isEmpty()) { log.debug("ec2 discovery returned no nodes, keeping current transport addresses"); return; }
+
+        List<TransportAddress> current = new ArrayList<>(client.transportAddresses());
+        for (TransportAddress address : discovered) {
+            if (!current.contains(address)) {
+                log.info("adding ec2 discovered transport node {}", address);
+                client.addTransportAddress(address);
+            }
+        }
+        if (unresolved) { return; }
+        for (TransportAddress address : current) {
+            if (!discovered.contains(address)) {
+                log.info("removing transport node {} no longer discovered in ec2", address);
+                client.removeTransportAddress(address);
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package io.polyglotted.common.es.rest;
+
+import org.apache.http.Header;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.CheckedFunction;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.emptySet;
+import static org.elasticsearch.common.xcontent.ToXContent.EMPTY_PARAMS;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.common.xcontent.XContentParserUtils.ensureExpectedToken;
+import static org.elasticsearch.common.xcontent.XContentType.JSON;
+
+class EsHighLevelClient extends RestHighLevelClient {
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson");
+
+    private final RestClient restClient;
+    private final HttpCompression compression;
+
+    EsHighLevelClient(RestClient restClient, HttpCompression compression) {
+        super(restClient);
+        this.restClient = restClient;
+        this.compression = compression;
+    }
+
+    @Override protected <Req extends ActionRequest, Resp> Resp performRequest(Req request, CheckedFunction<Req, Request, IOException> requestConverter,
+                                                                              CheckedFunction<Response, Resp, IOException> responseConverter,
+                                                                              Set<Integer> ignores, Header... headers) throws IOException {
+        if (!compression.enabled()) { return super.performRequest(request, requestConverter, responseConverter, ignores, headers); }
+        ActionRequestValidationException validationException = request.validate();
+        if (validationException != null) { throw validationException; }
+
+        Request req = compression.compress(requestConverter.apply(request));
+        Response response;
+        try {
+            response = restClient.performRequest(req.getMethod(), req.getEndpoint(), req.getParameters(), req.getEntity(),
+                compression.consumerFactory(), compression.headers(headers));
+        } catch (ResponseException re) {
+            return ignoredOrThrow(re, responseConverter, ignores);
+        }
+        return convert(response, responseConverter);
+    }
+
+    @Override protected <Req extends ActionRequest, Resp> void performRequestAsync(Req request, CheckedFunction<Req, Request, IOException> requestConverter,
+                                                                                   CheckedFunction<Response, Resp, IOException> responseConverter,
+                                                                                   ActionListener<Resp> listener, Set<Integer> ignores, Header... headers) {
+        if (!compression.enabled()) { super.performRequestAsync(request, requestConverter, responseConverter, listener, ignores, headers); return; }
+        ActionRequestValidationException validationException = request.validate();
+        if (validationException != null) { listener.onFailure(validationException); return; }
+
+        Request req;
+        try { req = compression.compress(requestConverter.apply(request)); } catch (Exception ex) { listener.onFailure(ex); return; }
+        restClient.performRequestAsync(req.getMethod(), req.getEndpoint(), req.getParameters(), req.getEntity(), compression.consumerFactory(),
+            new ResponseListener() {
+                @Override public void onSuccess(Response response) {
+                    Resp result;
+                    try { result = convert(response, responseConverter); } catch (Exception ex) { listener.onFailure(ex); return; }
+                    listener.onResponse(result);
+                }
+
+                @Override public void onFailure(Exception ex) {
+                    if (!(ex instanceof ResponseException)) { listener.onFailure(ex); return; }
+                    Resp result;
+                    try { result = ignoredOrThrow((ResponseException) ex, responseConverter, ignores); } catch (Exception inner) { listener.onFailure(inner); return; }
+                    listener.onResponse(result);
+                }
+            }, compression.headers(headers));
+    }
+
+    private <Resp> Resp ignoredOrThrow(ResponseException re, CheckedFunction<Response, Resp, IOException> responseConverter, Set<Integer> ignores) {
+        if (ignores.contains(re.getResponse().getStatusLine().getStatusCode())) {
+            try { return responseConverter.apply(re.getResponse()); } catch (Exception inner) { throw parseResponseException(re); }
+        }
+        throw parseResponseException(re);
+    }
+
+    private static <Resp> Resp convert(Response response, CheckedFunction<Response, Resp, IOException> responseConverter) throws IOException {
+        try {
+            return responseConverter.apply(response);
+        } catch (Exception ex) { throw new IOException("Unable to parse response body for " + response, ex); }
+    }
+
+    MultiGetResponse multiGet(MultiGetRequest request) throws IOException {
+        return performRequestAndParseEntity(request, EsHighLevelClient::multiGetRequest, this::multiGetResponse, emptySet());
+    }
+
+    void multiGetAsync(MultiGetRequest request, ActionListener<MultiGetResponse> listener) {
+        performRequestAsyncAndParseEntity(request, EsHighLevelClient::multiGetRequest, this::multiGetResponse, listener, emptySet());
+    }
+
+    MultiSearchResponse multiSearch(MultiSearchRequest request) throws IOException {
+        return performRequestAndParseEntity(request, EsHighLevelClient::multiSearchRequest, this::multiSearchResponse, emptySet());
+    }
+
+    void multiSearchAsync(MultiSearchRequest request, ActionListener<MultiSearchResponse> listener) {
+        performRequestAsyncAndParseEntity(request, EsHighLevelClient::multiSearchRequest, this::multiSearchResponse, listener, emptySet());
+    }
+
+    static Request multiGetRequest(MultiGetRequest request) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (request.preference() != null) { params.put("preference", request.preference()); }
+        if (!request.realtime()) { params.put("realtime", "false"); }
+        if (request.refresh()) { params.put("refresh", "true"); }
+
+        XContentBuilder builder = jsonBuilder().startObject().startArray("docs");
+        for (MultiGetRequest.Item item : request.getItems()) {
+            builder.startObject().field("_index", item.index());
+            if (item.type() != null) { builder.field("_type", item.type()); }
+            builder.field("_id", item.id());
+            if (item.routing() != null) { builder.field("_routing", item.routing()); }
+            if (item.parent() != null) { builder.field("_parent", item.parent()); }
+            if (item.storedFields() != null) { builder.array("stored_fields", item.storedFields()); }
+            if (item.version() > 0) { builder.field("_version", item.version()).field("_version_type", item.versionType().name().toLowerCase(Locale.ROOT)); }
+            FetchSourceContext source = item.fetchSourceContext();
+            if (source != null) { builder.field("_source"); source.toXContent(builder, EMPTY_PARAMS); }
+            builder.endObject();
+        }
+        builder.endArray().endObject();
+        return new Request("GET", "/_mget", params, entity(builder.bytes(), ContentType.APPLICATION_JSON));
+    }
+
+    static Request multiSearchRequest(MultiSearchRequest request) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (request.maxConcurrentSearchRequests() > 0) { params.put("max_concurrent_searches", String.valueOf(request.maxConcurrentSearchRequests())); }
+
+        BytesStreamOutput output = new BytesStreamOutput();
+        for (SearchRequest search : request.requests()) {
+            XContentBuilder header = jsonBuilder(output).startObject();
+            if (search.indices() != null && search.indices().length > 0) { header.array("index", search.indices()); }
+            if (search.types() != null && search.types().length > 0) { header.array("type", search.types()); }
+            header.field("search_type", search.searchType().name().toLowerCase(Locale.ROOT));
+            if (search.preference() != null) { header.field("preference", search.preference()); }
+            if (search.routing() != null) { header.field("routing", search.routing()); }
+            if (search.requestCache() != null) { header.field("request_cache", search.requestCache()); }
+            header.endObject().close();
+            output.write('\n');
+
+            XContentBuilder body = jsonBuilder(output);
+            if (search.source() != null) { search.source().toXContent(body, EMPTY_PARAMS); }
+            else { body.startObject().endObject(); }
+            body.close();
+            output.write('\n');
+        }
+        return new Request("GET", "/_msearch", params, entity(output.bytes(), NDJSON));
+    }
+
+    private MultiGetResponse multiGetResponse(XContentParser parser) throws IOException {
+        List<MultiGetItemResponse> items = new ArrayList<>();
+        ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.nextToken(), parser::getTokenLocation);
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            if ("docs".equals(parser.currentName())) {
+                ensureExpectedToken(XContentParser.Token.START_ARRAY, parser.nextToken(), parser::getTokenLocation);
+                while (parser.nextToken() == XContentParser.Token.START_OBJECT) {
+                    BytesReference doc = jsonBuilder().copyCurrentStructure(parser).bytes();
+                    Map<String, String> ids = new HashMap<>();
+                    ElasticsearchException failure = scanFailure(doc, ids);
+                    items.add(failure == null ? new MultiGetItemResponse(parse(doc, GetResponse::fromXContent), null) :
+                        new MultiGetItemResponse(null, new MultiGetResponse.Failure(ids.get("_index"), ids.get("_type"), ids.get("_id"), failure)));
+                }
+            }
+            else { parser.nextToken(); parser.skipChildren(); }
+        }
+        return new MultiGetResponse(items.toArray(new MultiGetItemResponse[0]));
+    }
+
+    private MultiSearchResponse multiSearchResponse(XContentParser parser) throws IOException {
+        List<MultiSearchResponse.Item> items = new ArrayList<>();
+        ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.nextToken(), parser::getTokenLocation);
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            if ("responses".equals(parser.currentName())) {
+                ensureExpectedToken(XContentParser.Token.START_ARRAY, parser.nextToken(), parser::getTokenLocation);
+                while (parser.nextToken() == XContentParser.Token.START_OBJECT) {
+                    BytesReference response = jsonBuilder().copyCurrentStructure(parser).bytes();
+                    ElasticsearchException failure = scanFailure(response, new HashMap<>());
+                    items.add(failure == null ? new MultiSearchResponse.Item(parse(response, SearchResponse::fromXContent), null) :
+                        new MultiSearchResponse.Item(null, failure));
+                }
+            }
+            else { parser.nextToken(); parser.skipChildren(); }
+        }
+        return new MultiSearchResponse(items.toArray(new MultiSearchResponse.Item[0]));
+    }
+
+    private static ElasticsearchException scanFailure(BytesReference item, Map<String, String> ids) throws IOException {
+        try (XContentParser parser = JSON.xContent().createParser(NamedXContentRegistry.EMPTY, item)) {
+            parser.nextToken();
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String name = parser.currentName();
+                XContentParser.Token token = parser.nextToken();
+                if ("error".equals(name)) {
+                    return token == XContentParser.Token.START_OBJECT ? ElasticsearchException.fromXContent(parser) : new ElasticsearchException(parser.text());
+                }
+                if (token.isValue()) { ids.put(name, parser.text()); }
+                else { parser.skipChildren(); }
+            }
+        }
+        return null;
+    }
+
+    private <T> T parse(BytesReference item, CheckedFunction<XContentParser, T, IOException> itemParser) throws IOException {
+        return parseEntity(entity(item, ContentType.APPLICATION_JSON), itemParser);
+    }
+
+    private static ByteArrayEntity entity(BytesReference bytes, ContentType contentType) {
+        return new ByteArrayEntity(BytesReference.toBytes(bytes), contentType);
+    }
+}
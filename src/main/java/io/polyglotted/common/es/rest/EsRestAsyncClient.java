@@ -0,0 +1,138 @@
+package io.polyglotted.common.es.rest;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import io.polyglotted.common.es.AsyncElasticClient;
+import io.polyglotted.common.es.HealthWait;
+import lombok.RequiredArgsConstructor;
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.HttpEntity;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.net.ConnectException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static io.polyglotted.common.es.ElasticException.handleEx;
+import static io.polyglotted.common.es.ListenerFuture.listen;
+import static org.apache.http.HttpStatus.SC_OK;
+
+@RequiredArgsConstructor
+class EsRestAsyncClient implements AsyncElasticClient {
+    private static final Joiner COMMA = Joiner.on(",");
+    private final RestClient restClient;
+    private final EsHighLevelClient internalClient;
+    private final HttpCompression compression;
+
+    @Override public CompletableFuture<Boolean> indexExists(String index) {
+        return performAsync("HEAD", "/" + index, null, "indexExists", response -> response.getStatusLine().getStatusCode() == SC_OK);
+    }
+
+    @Override public CompletableFuture<Set<String>> getIndices(String alias) {
+        return performAsync("GET", "/" + alias + "/_aliases", null, "getIndices",
+            response -> EsRestClient.parseEntity(response, EsRestClient::topLevelKeys));
+    }
+
+    @Override public CompletableFuture<Void> forceRefresh(String... indices) {
+        return performAsync("POST", "/" + COMMA.join(indices) + "/_refresh", null, "forceRefresh", response -> null);
+    }
+
+    @Override public CompletableFuture<Map<String, Object>> clusterHealth() {
+        return performAsync("GET", "/_cluster/health", null, "clusterHealth", response -> EsRestClient.parseEntity(response, XContentParser::mapOrdered));
+    }
+
+    @Override public CompletableFuture<Map<String, Object>> waitForStatus(HealthWait wait) {
+        return wait.poll(timeoutMillis -> {
+            Map<String, String> params = wait.restParams(timeoutMillis);
+            params.put("ignore", "408");
+            return performAsync("GET", "/_cluster/health", params, null, "waitForStatus",
+                response -> EsRestClient.parseEntity(response, XContentParser::mapOrdered));
+        }, cause -> cause instanceof ConnectException || cause instanceof ConnectionClosedException);
+    }
+
+    @Override public CompletableFuture<IndexResponse> index(IndexRequest request) {
+        return listen("index failed", l -> internalClient.indexAsync(request, l));
+    }
+
+    @Override public CompletableFuture<UpdateResponse> update(UpdateRequest request) {
+        return listen("update failed", l -> internalClient.updateAsync(request, l));
+    }
+
+    @Override public CompletableFuture<DeleteResponse> delete(DeleteRequest request) {
+        return listen("delete failed", l -> internalClient.deleteAsync(request, l));
+    }
+
+    @Override public CompletableFuture<BulkResponse> bulk(BulkRequest request) {
+        return listen("bulk failed", l -> internalClient.bulkAsync(request, l));
+    }
+
+    @Override public CompletableFuture<GetResponse> get(GetRequest request) {
+        return listen("get failed", l -> internalClient.getAsync(request, l));
+    }
+
+    @Override public CompletableFuture<MultiGetResponse> multiGet(MultiGetRequest request) {
+        return listen("multiGet failed", l -> internalClient.multiGetAsync(request, l));
+    }
+
+    @Override public CompletableFuture<SearchResponse> search(SearchRequest request) {
+        return listen("search failed", l -> internalClient.searchAsync(request, l));
+    }
+
+    @Override public CompletableFuture<MultiSearchResponse> multiSearch(MultiSearchRequest request) {
+        return listen("multiSearch failed", l -> internalClient.multiSearchAsync(request, l));
+    }
+
+    @Override public CompletableFuture<SearchResponse> searchScroll(SearchScrollRequest request) {
+        return listen("searchScroll failed", l -> internalClient.searchScrollAsync(request, l));
+    }
+
+    @Override public CompletableFuture<ClearScrollResponse> clearScroll(ClearScrollRequest request) {
+        return listen("clearScroll failed", l -> internalClient.clearScrollAsync(request, l));
+    }
+
+    private <T> CompletableFuture<T> performAsync(String method, String endpoint, HttpEntity entity, String methodName, ResponseMapper<T> mapper) {
+        return performAsync(method, endpoint, ImmutableMap.of(), entity, methodName, mapper);
+    }
+
+    private <T> CompletableFuture<T> performAsync(String method, String endpoint, Map<String, String> params, HttpEntity entity,
+                                                  String methodName, ResponseMapper<T> mapper) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            restClient.performRequestAsync(method, endpoint, params, compression.compress(entity), compression.consumerFactory(), new ResponseListener() {
+                @Override public void onSuccess(Response response) {
+                    try { future.complete(mapper.apply(response)); } catch (Exception ex) { onFailure(ex); }
+                }
+
+                @Override public void onFailure(Exception ex) { future.completeExceptionally(handleEx(methodName + " failed", ex)); }
+            }, compression.headers());
+        } catch (Exception ex) { future.completeExceptionally(handleEx(methodName + " failed", ex)); }
+        return future;
+    }
+
+    private interface ResponseMapper<T> {
+        T apply(Response response) throws Exception;
+    }
+}
@@ -3,13 +3,15 @@ package io.polyglotted.common.es.rest;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import io.polyglotted.common.es.AsyncElasticClient;
 import io.polyglotted.common.es.ElasticClient;
+import io.polyglotted.common.es.HealthWait;
 import io.polyglotted.common.es.ElasticException;
-import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
-import org.apache.http.ConnectionClosedException;
 import org.apache.http.HttpEntity;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
@@ -38,40 +40,64 @@ import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
-import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.sniff.Sniffer;
+import org.elasticsearch.common.CheckedFunction;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.index.query.QueryBuilder;
 
 import java.io.IOException;
-import java.net.ConnectException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
 import static io.polyglotted.common.es.ElasticException.checkState;
 import static io.polyglotted.common.es.ElasticException.handleEx;
-import static io.polyglotted.common.util.BaseSerializer.deserialize;
 import static org.apache.http.HttpStatus.SC_MULTIPLE_CHOICES;
 import static org.apache.http.HttpStatus.SC_OK;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.common.xcontent.XContentParserUtils.ensureExpectedToken;
+import static org.elasticsearch.common.xcontent.XContentType.JSON;
 
-@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class EsRestClient implements ElasticClient {
     private static final Joiner COMMA = Joiner.on(",");
     private final RestClient restClient;
     private final Sniffer sniffer;
-    private final RestHighLevelClient internalClient;
+    private final EsHighLevelClient internalClient;
+    private final HttpCompression compression;
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final LatencyAwareHostSelector hostSelector;
+    private final AsyncElasticClient asyncClient;
 
-    public EsRestClient(RestClient restClient, Sniffer sniffer) {
-        this(restClient, sniffer, new RestHighLevelClient(restClient));
+    public EsRestClient(RestClient restClient, Sniffer sniffer) { this(builder(restClient).sniffer(sniffer)); }
+
+    private EsRestClient(Builder builder) {
+        this.restClient = builder.restClient;
+        this.sniffer = builder.sniffer;
+        this.compression = builder.compression;
+        this.internalClient = new EsHighLevelClient(restClient, compression);
+        this.connectionManager = builder.connectionManager;
+        this.hostSelector = builder.hostSelector;
+        this.asyncClient = new EsRestAsyncClient(restClient, internalClient, compression);
     }
 
+    public static Builder builder(RestClient restClient) { return new Builder(restClient); }
+
     @Override public void close() throws Exception {
+        if (hostSelector != null) {
+            hostSelector.close();
+        }
         if (sniffer != null) {
             sniffer.close();
         }
         restClient.close();
     }
 
+    @Override public AsyncElasticClient async() { return asyncClient; }
+
     @Override public boolean indexExists(String index) {
         try {
             return restClient.performRequest("HEAD", "/" + index)
@@ -87,8 +113,7 @@ public class EsRestClient implements ElasticClient {
 
     @Override public Set<String> getIndices(String alias) {
         try {
-            Map<String, Object> responseObject = deserialize(performCliRequest("GET", "/" + alias + "/_aliases"));
-            return ImmutableSet.copyOf(responseObject.keySet());
+            return performStreamRequest("GET", "/" + alias + "/_aliases", ImmutableMap.of(), EsRestClient::topLevelKeys);
         } catch (Exception ioe) {
             throw handleEx("getIndices failed", ioe);
         }
@@ -96,7 +121,7 @@ public class EsRestClient implements ElasticClient {
 
     @Override public String getIndexMeta(String... indices) {
         try {
-            return performCliRequest("GET", "/" + COMMA.join(indices) + "/");
+            return performStreamRequest("GET", "/" + COMMA.join(indices) + "/", ImmutableMap.of(), EsRestClient::copyToString);
         } catch (Exception ioe) {
             throw handleEx("getIndexMeta failed", ioe);
         }
@@ -104,7 +129,7 @@ public class EsRestClient implements ElasticClient {
 
     @Override public String getSettings(String... indices) {
         try {
-            return performCliRequest("GET", "/" + COMMA.join(indices) + "/_settings");
+            return performStreamRequest("GET", "/" + COMMA.join(indices) + "/_settings", ImmutableMap.of(), EsRestClient::copyToString);
         } catch (Exception e) {
             throw handleEx("getSettings failed", e);
         }
@@ -112,9 +137,9 @@ public class EsRestClient implements ElasticClient {
 
     @Override public String getMapping(String index, String type) {
         try {
-            return performCliRequest("GET", "/" + index + "/" + type + "/_mapping");
+            return performStreamRequest("GET", "/" + index + "/" + type + "/_mapping", ImmutableMap.of(), EsRestClient::copyToString);
         } catch (Exception e) {
-            throw handleEx("getSettings failed", e);
+            throw handleEx("getMapping failed", e);
         }
     }
 
@@ -163,34 +188,38 @@ public class EsRestClient implements ElasticClient {
     }
 
     @Override public void waitForStatus(String status) {
-        waitForStatus(status, 0);
+        waitForStatus(HealthWait.forStatus(status));
     }
 
-    private void waitForStatus(String status, int iter) {
-        if (iter > 300) {
-            throw new ElasticException("waitForStatus exceeded 300 iterations");
-        }
-        try {
-            performCliRequest("GET", "/_cluster/health?wait_for_status=" + status);
-        } catch (ConnectException | ConnectionClosedException retry) {
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException ignored) {
-            }
-            waitForStatus(status, iter + 1);
-        } catch (Exception ioe) {
-            throw handleEx("waitForStatus failed", ioe);
-        }
+    @Override public Map<String, Object> waitForStatus(HealthWait wait) {
+        return HealthWait.await(async().waitForStatus(wait));
     }
 
     @Override public Map<String, Object> clusterHealth() {
         try {
-            return deserialize(performCliRequest("GET", "/_cluster/health"));
+            return performStreamRequest("GET", "/_cluster/health", ImmutableMap.of(), XContentParser::mapOrdered);
         } catch (Exception ioe) {
             throw handleEx("clusterHealth failed", ioe);
         }
     }
 
+    @Override public Map<String, Object> connectionPoolStats() {
+        if (connectionManager == null) {
+            return ImmutableMap.of();
+        }
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), poolStats(connectionManager.getStats(route)));
+        }
+        return hostSelector == null ? ImmutableMap.of("total", poolStats(connectionManager.getTotalStats()), "routes", routes) :
+            ImmutableMap.of("total", poolStats(connectionManager.getTotalStats()), "routes", routes, "hosts", hostSelector.stats());
+    }
+
+    private static Map<String, Object> poolStats(PoolStats stats) {
+        return ImmutableMap.of("leased", stats.getLeased(), "pending", stats.getPending(),
+                "available", stats.getAvailable(), "max", stats.getMax());
+    }
+
     @Override public void buildPipeline(String id, String resource) {
         simplePut("/_ingest/pipeline/" + id, resource, "putPipeline");
     }
@@ -264,7 +293,11 @@ public class EsRestClient implements ElasticClient {
     }
 
     @Override public MultiGetResponse multiGet(MultiGetRequest request) {
-        throw new UnsupportedOperationException();
+        try {
+            return internalClient.multiGet(request);
+        } catch (IOException ioe) {
+            throw new ElasticException("multiGet failed", ioe);
+        }
     }
 
     @Override public SearchResponse search(SearchRequest request) {
@@ -276,7 +309,11 @@ public class EsRestClient implements ElasticClient {
     }
 
     @Override public MultiSearchResponse multiSearch(MultiSearchRequest request) {
-        throw new UnsupportedOperationException();
+        try {
+            return internalClient.multiSearch(request);
+        } catch (IOException ioe) {
+            throw new ElasticException("multiSearch failed", ioe);
+        }
     }
 
     @Override public SearchResponse searchScroll(SearchScrollRequest request) {
@@ -315,6 +352,23 @@ public class EsRestClient implements ElasticClient {
         throw handleEx(methodName + " failed", throwable);
     }
 
+    @Override public Map<String, Object> filteredGet(String endpoint, String methodName, String... filterPaths) {
+        Exception throwable;
+        try {
+            return performStreamRequest("GET", endpoint, filterPaths.length == 0 ? ImmutableMap.of() :
+                    ImmutableMap.of("filter_path", COMMA.join(filterPaths)), XContentParser::mapOrdered);
+
+        } catch (ResponseException re) {
+            if (re.getResponse().getStatusLine().getStatusCode() == 404) {
+                return null;
+            }
+            throwable = re;
+        } catch (Exception ioe) {
+            throwable = ioe;
+        }
+        throw handleEx(methodName + " failed", throwable);
+    }
+
     @Override public String simplePost(String endpoint, String body, String methodName) {
         return simpleExecute("POST", endpoint, body, methodName);
     }
@@ -346,11 +400,74 @@ public class EsRestClient implements ElasticClient {
 
     private String performCliRequest(String method, String endpoint, Map<String, String> params,
                                      HttpEntity entity) throws IOException {
-        Response response = restClient.performRequest(method, endpoint, params, entity);
+        return EntityUtils.toString(performChecked(method, endpoint, params, entity).getEntity());
+    }
+
+    private <T> T performStreamRequest(String method, String endpoint, Map<String, String> params,
+                                       CheckedFunction<XContentParser, T, IOException> parser) throws IOException {
+        return parseEntity(performChecked(method, endpoint, params, null), parser);
+    }
+
+    private Response performChecked(String method, String endpoint, Map<String, String> params,
+                                    HttpEntity entity) throws IOException {
+        Response response = restClient.performRequest(method, endpoint, params, compression.compress(entity),
+                compression.consumerFactory(), compression.headers());
         int statusCode = response.getStatusLine().getStatusCode();
 
         checkState(statusCode >= SC_OK && statusCode < SC_MULTIPLE_CHOICES,
                 response.getStatusLine().getReasonPhrase());
-        return EntityUtils.toString(response.getEntity());
+        return response;
+    }
+
+    static <T> T parseEntity(Response response, CheckedFunction<XContentParser, T, IOException> parser) throws IOException {
+        HttpEntity entity = response.getEntity();
+        checkState(entity != null, "response has no body");
+        try (InputStream stream = entity.getContent();
+             XContentParser xContentParser = JSON.xContent().createParser(NamedXContentRegistry.EMPTY, stream)) {
+            return parser.apply(xContentParser);
+        }
+    }
+
+    static Set<String> topLevelKeys(XContentParser parser) throws IOException {
+        ImmutableSet.Builder<String> keys = ImmutableSet.builder();
+        ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.nextToken(), parser::getTokenLocation);
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            keys.add(parser.currentName());
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return keys.build();
+    }
+
+    static String copyToString(XContentParser parser) throws IOException {
+        try (XContentBuilder builder = jsonBuilder()) {
+            parser.nextToken();
+            builder.copyCurrentStructure(parser);
+            return builder.string();
+        }
+    }
+
+    public static final class Builder {
+        private final RestClient restClient;
+        private Sniffer sniffer;
+        private HttpCompression compression = HttpCompression.NONE;
+        private PoolingNHttpClientConnectionManager connectionManager;
+        private LatencyAwareHostSelector hostSelector;
+
+        private Builder(RestClient restClient) { this.restClient = restClient; }
+
+        public Builder sniffer(Sniffer sniffer) { this.sniffer = sniffer; return this; }
+
+        public Builder compression(int threshold) {
+            checkState(threshold >= 0, "compression threshold must not be negative");
+            this.compression = new HttpCompression(threshold);
+            return this;
+        }
+
+        public Builder connectionManager(PoolingNHttpClientConnectionManager connectionManager) { this.connectionManager = connectionManager; return this; }
+
+        public Builder hostSelector(LatencyAwareHostSelector hostSelector) { this.hostSelector = hostSelector; return this; }
+
+        public EsRestClient build() { return new EsRestClient(this); }
     }
-}
\ No newline at end of file
+}
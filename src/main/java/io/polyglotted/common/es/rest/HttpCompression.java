@@ -0,0 +1,74 @@
+package io.polyglotted.common.es.rest;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
+import org.elasticsearch.client.HeapBufferedAsyncResponseConsumer;
+import org.elasticsearch.client.HttpAsyncResponseConsumerFactory;
+import org.elasticsearch.client.Request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+@RequiredArgsConstructor
+final class HttpCompression {
+    static final HttpCompression NONE = new HttpCompression(-1);
+    private static final int RESPONSE_BUFFER_LIMIT = 100 * 1024 * 1024;
+    private static final Header ACCEPT_GZIP = new BasicHeader("Accept-Encoding", "gzip");
+    private final int threshold;
+
+    boolean enabled() { return threshold >= 0; }
+
+    Request compress(Request request) throws IOException {
+        HttpEntity entity = compress(request.getEntity());
+        return entity == request.getEntity() ? request : new Request(request.getMethod(), request.getEndpoint(), request.getParameters(), entity);
+    }
+
+    HttpEntity compress(HttpEntity entity) throws IOException {
+        if (!enabled() || entity == null || entity.getContentEncoding() != null) { return entity; }
+        if (entity.getContentLength() >= 0 && entity.getContentLength() < threshold) { return entity; }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entity.getContentLength() > 0 ? (int) (entity.getContentLength() / 4) : 1024);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) { entity.writeTo(gzip); }
+        ByteArrayEntity compressed = new ByteArrayEntity(bytes.toByteArray(), entity.getContentType() == null ?
+            ContentType.APPLICATION_JSON : ContentType.parse(entity.getContentType().getValue()));
+        compressed.setContentEncoding("gzip");
+        return compressed;
+    }
+
+    Header[] headers(Header... headers) {
+        if (!enabled()) { return headers; }
+        Header[] result = Arrays.copyOf(headers, headers.length + 1);
+        result[headers.length] = ACCEPT_GZIP;
+        return result;
+    }
+
+    HttpAsyncResponseConsumerFactory consumerFactory() {
+        return enabled() ? GzipResponseConsumer::new : HttpAsyncResponseConsumerFactory.DEFAULT;
+    }
+
+    private static final class GzipResponseConsumer extends HeapBufferedAsyncResponseConsumer {
+        GzipResponseConsumer() { super(RESPONSE_BUFFER_LIMIT); }
+
+        @Override protected HttpResponse buildResult(HttpContext context) throws Exception {
+            HttpResponse response = super.buildResult(context);
+            HttpEntity entity = response.getEntity();
+            Header encoding = entity == null ? null : entity.getContentEncoding();
+            if (encoding != null && encoding.getValue().toLowerCase(Locale.ROOT).contains("gzip")) {
+                response.setEntity(new GzipDecompressingEntity(entity));
+                response.removeHeaders("Content-Encoding");
+                response.removeHeaders("Content-Length");
+            }
+            return response;
+        }
+    }
+}
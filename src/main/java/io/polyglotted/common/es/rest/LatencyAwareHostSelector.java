@@ -0,0 +1,272 @@
+package io.polyglotted.common.es.rest;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.sniff.HostsSniffer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static io.polyglotted.common.es.ElasticException.checkState;
+
+/*
+ * the 5.x RestClient round-robins over its host set with no per-request hook, so selection is applied by
+ * periodically narrowing that set: outliers and failing hosts are ejected for a while, hosts in the local
+ * zone (or all hosts without one) are narrowed to those scoring within PREFERRED_RATIO of the fastest, where
+ * the score is ewma latency weighted by in-flight requests. when fewer than minActive remain the set is
+ * topped up with other hosts, keeping those already active and then ranking by score. setHosts also clears
+ * the client's dead host blacklist, so it is only called when that selection changes; sniffed hosts are
+ * passed through the same selection before the sniffer applies them.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class LatencyAwareHostSelector extends RestClient.FailureListener implements Closeable {
+    private static final String START_NANOS = "es.selector.start.nanos";
+    private static final double ALPHA = 0.3;
+    private static final int MIN_SAMPLES = 5;
+    private static final int MAX_EJECTED_PERCENT = 50;
+    private static final double PREFERRED_RATIO = 2.0;
+    private final Map<HttpHost, HostStats> stats = new ConcurrentHashMap<>();
+    private final String localZone;
+    private final Map<String, String> zones;
+    private final long refreshMillis;
+    private final double outlierFactor;
+    private final long ejectionMillis;
+    private final int failureThreshold;
+    private final int minActive;
+    private final ScheduledExecutorService scheduler;
+    private volatile Set<HttpHost> knownHosts = Collections.emptySet();
+    private volatile Set<HttpHost> activeHosts = Collections.emptySet();
+    private volatile RestClient.FailureListener delegate = new RestClient.FailureListener();
+    private Consumer<HttpHost[]> hostsUpdater;
+    private PoolingNHttpClientConnectionManager connectionManager;
+
+    public LatencyAwareHostSelector(String localZone, Map<String, String> zones, long refreshMillis,
+                                    double outlierFactor, long ejectionMillis, int failureThreshold, int minActive) {
+        checkState(refreshMillis > 0, "refreshMillis must be positive");
+        checkState(outlierFactor > 1, "outlierFactor must be greater than 1");
+        checkState(minActive > 0, "minActive must be positive");
+        this.localZone = localZone;
+        this.zones = ImmutableMap.copyOf(zones);
+        this.refreshMillis = refreshMillis;
+        this.outlierFactor = outlierFactor;
+        this.ejectionMillis = ejectionMillis;
+        this.failureThreshold = failureThreshold;
+        this.minActive = minActive;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "es-host-selector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public HttpAsyncClientBuilder instrument(HttpAsyncClientBuilder clientBuilder) {
+        return clientBuilder.addInterceptorFirst((HttpRequestInterceptor) (request, context) -> context.setAttribute(START_NANOS, System.nanoTime()))
+            .addInterceptorLast((HttpResponseInterceptor) (response, context) -> {
+                Object start = context.getAttribute(START_NANOS);
+                HttpHost target = HttpClientContext.adapt(context).getTargetHost();
+                // 5xx responses are reported through onFailure and must not reset the failure count
+                if (start != null && target != null && response.getStatusLine().getStatusCode() < 500) {
+                    success(target, System.nanoTime() - (Long) start);
+                }
+            });
+    }
+
+    public HostsSniffer tracking(HostsSniffer hostsSniffer) { return () -> sniffed(hostsSniffer.sniffHosts()); }
+
+    public void attach(RestClient restClient, PoolingNHttpClientConnectionManager connectionManager,
+                       RestClient.FailureListener failureListener, HttpHost... hosts) {
+        attach(restClient::setHosts, connectionManager, failureListener, hosts);
+    }
+
+    public void attach(Consumer<HttpHost[]> hostsUpdater, PoolingNHttpClientConnectionManager connectionManager,
+                RestClient.FailureListener failureListener, HttpHost... hosts) {
+        this.hostsUpdater = hostsUpdater;
+        this.connectionManager = connectionManager;
+        if (failureListener != null) { this.delegate = failureListener; }
+        this.knownHosts = new LinkedHashSet<>(Arrays.asList(hosts));
+        this.activeHosts = knownHosts;
+        scheduler.scheduleWithFixedDelay(this::refreshSafely, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override public void onFailure(HttpHost host) {
+        hostStats(host).failure();
+        delegate.onFailure(host);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Set<HttpHost> active = activeHosts;
+        for (HttpHost host : knownHosts) {
+            HostStats hostStats = hostStats(host);
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("zone", zones.getOrDefault(host.getHostName(), "unknown"));
+            values.put("active", active.contains(host));
+            values.put("ejected", hostStats.isEjected(System.currentTimeMillis()));
+            values.put("ewmaMillis", hostStats.ewmaNanos / 1_000_000.0);
+            values.put("inFlight", inFlight(host));
+            values.put("failures", hostStats.consecutiveFailures);
+            result.put(host.toURI(), values);
+        }
+        return result;
+    }
+
+    @Override public void close() { scheduler.shutdownNow(); }
+
+    public void success(HttpHost host, long latencyNanos) { hostStats(host).success(latencyNanos); }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (Exception ex) { log.warn("host selection refresh failed", ex); }
+    }
+
+    public synchronized void refresh() {
+        if (knownHosts.isEmpty() || hostsUpdater == null) { return; }
+        Set<HttpHost> active = nextActive();
+        if (!active.equals(activeHosts)) {
+            log.debug("es active hosts changed to {}", active);
+            hostsUpdater.accept(active.toArray(new HttpHost[0]));
+            activeHosts = active;
+        }
+    }
+
+    private synchronized List<HttpHost> sniffed(List<HttpHost> hosts) {
+        if (hosts.isEmpty()) { return hosts; }
+        knownHosts = new LinkedHashSet<>(hosts);
+        activeHosts = nextActive();
+        log.debug("es sniffed hosts narrowed to {}", activeHosts);
+        return new ArrayList<>(activeHosts);
+    }
+
+    private Set<HttpHost> nextActive() {
+        List<HttpHost> known = new ArrayList<>(knownHosts);
+        long now = System.currentTimeMillis();
+        double median = medianLatency(known);
+
+        List<HttpHost> healthy = new ArrayList<>();
+        int ejected = 0;
+        for (HttpHost host : known) { if (hostStats(host).reinstateIfDue(now, median)) { ejected++; } }
+        for (HttpHost host : known) {
+            HostStats hostStats = hostStats(host);
+            if (!hostStats.isEjected(now) && isOutlier(hostStats, median) && (ejected + 1) * 100 <= known.size() * MAX_EJECTED_PERCENT) {
+                hostStats.eject(now, ejectionMillis);
+                ejected++;
+                log.info("ejecting es host {} for {}ms (ewma {}ms, median {}ms, failures {})", host, hostStats.ejectedUntil - now,
+                    hostStats.ewmaNanos / 1_000_000, (long) median / 1_000_000, hostStats.consecutiveFailures);
+            }
+            if (!hostStats.isEjected(now)) { healthy.add(host); }
+        }
+        if (healthy.isEmpty()) { healthy = known; }
+
+        Set<HttpHost> active = select(healthy);
+        for (HttpHost host : healthy) { if (!active.contains(host)) { hostStats(host).decayTowards(median); } }
+        return active;
+    }
+
+    private Set<HttpHost> select(List<HttpHost> healthy) {
+        List<HttpHost> preferred = new ArrayList<>();
+        for (HttpHost host : healthy) { if (localZone == null || localZone.equals(zones.get(host.getHostName()))) { preferred.add(host); } }
+        Set<HttpHost> result = fastest(preferred);
+        if (result.size() >= minActive) { return result; }
+
+        Set<HttpHost> current = activeHosts;
+        List<HttpHost> others = new ArrayList<>(healthy);
+        others.removeAll(result);
+        others.sort(Comparator.comparing((HttpHost host) -> !current.contains(host)).thenComparingDouble(this::score).thenComparing(HttpHost::toURI));
+        for (int i = 0; result.size() < minActive && i < others.size(); i++) { result.add(others.get(i)); }
+        return result;
+    }
+
+    private Set<HttpHost> fastest(List<HttpHost> hosts) {
+        double best = Double.MAX_VALUE;
+        for (HttpHost host : hosts) { if (hostStats(host).samples >= MIN_SAMPLES) { best = Math.min(best, score(host)); } }
+        Set<HttpHost> result = new LinkedHashSet<>();
+        for (HttpHost host : hosts) { if (hostStats(host).samples < MIN_SAMPLES || score(host) <= best * PREFERRED_RATIO) { result.add(host); } }
+        return result;
+    }
+
+    private double score(HttpHost host) { return hostStats(host).ewmaNanos * (inFlight(host) + 1); }
+
+    private int inFlight(HttpHost host) {
+        if (connectionManager == null) { return 0; }
+        PoolStats poolStats = connectionManager.getStats(new HttpRoute(host));
+        return poolStats.getLeased() + poolStats.getPending();
+    }
+
+    private boolean isOutlier(HostStats hostStats, double median) {
+        return hostStats.consecutiveFailures >= failureThreshold ||
+            (median > 0 && hostStats.samples >= MIN_SAMPLES && hostStats.ewmaNanos > outlierFactor * median);
+    }
+
+    private double medianLatency(List<HttpHost> hosts) {
+        List<Double> latencies = new ArrayList<>();
+        for (HttpHost host : hosts) {
+            HostStats hostStats = hostStats(host);
+            if (hostStats.samples >= MIN_SAMPLES) { latencies.add(hostStats.ewmaNanos); }
+        }
+        if (latencies.isEmpty()) { return 0; }
+        Collections.sort(latencies);
+        return latencies.get(latencies.size() / 2);
+    }
+
+    private HostStats hostStats(HttpHost host) { return stats.computeIfAbsent(Objects.requireNonNull(host), h -> new HostStats()); }
+
+    private static final class HostStats {
+        volatile double ewmaNanos = 0;
+        volatile long samples = 0;
+        volatile int consecutiveFailures = 0;
+        volatile long ejectedUntil = 0;
+        int ejections = 0;
+
+        synchronized void success(long latencyNanos) {
+            ewmaNanos = samples == 0 ? latencyNanos : ALPHA * latencyNanos + (1 - ALPHA) * ewmaNanos;
+            samples++;
+            consecutiveFailures = 0;
+        }
+
+        synchronized void failure() { consecutiveFailures++; }
+
+        boolean isEjected(long now) { return ejectedUntil > now; }
+
+        synchronized void eject(long now, long ejectionMillis) {
+            ejections++;
+            ejectedUntil = now + ejectionMillis * Math.min(ejections, 10);
+        }
+
+        synchronized boolean reinstateIfDue(long now, double median) {
+            if (ejectedUntil == 0) { return false; }
+            if (ejectedUntil > now) { return true; }
+            ejectedUntil = 0;
+            ewmaNanos = median;
+            samples = 0;
+            consecutiveFailures = 0;
+            return false;
+        }
+
+        synchronized void decayTowards(double median) { if (median > 0) { ewmaNanos = ALPHA * median + (1 - ALPHA) * ewmaNanos; } }
+    }
+}
@@ -0,0 +1,113 @@
+package io.polyglotted.common.es.transport;
+
+import io.polyglotted.common.es.AsyncElasticClient;
+import io.polyglotted.common.es.HealthWait;
+import io.polyglotted.common.es.ListenerFuture;
+import lombok.RequiredArgsConstructor;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.transport.ConnectTransportException;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static io.polyglotted.common.es.ListenerFuture.listen;
+import static io.polyglotted.common.es.transport.EsTransportClient.aliasesOnly;
+import static org.elasticsearch.client.Requests.refreshRequest;
+
+@RequiredArgsConstructor
+class EsTransportAsyncClient implements AsyncElasticClient {
+    private final Client internalClient;
+
+    @Override public CompletableFuture<Boolean> indexExists(String index) {
+        return ListenerFuture.<IndicesExistsResponse>listen("indexExists failed",
+            l -> internalClient.admin().indices().exists(new IndicesExistsRequest(index), l)).thenApply(IndicesExistsResponse::isExists);
+    }
+
+    @Override public CompletableFuture<Set<String>> getIndices(String alias) {
+        return ListenerFuture.<GetIndexResponse>listen("getIndices failed",
+            l -> internalClient.admin().indices().getIndex(aliasesOnly(alias), l)).thenApply(EsTransportClient::indexNames);
+    }
+
+    @Override public CompletableFuture<Void> forceRefresh(String... indices) {
+        return ListenerFuture.<RefreshResponse>listen("refresh failed",
+            l -> internalClient.admin().indices().refresh(refreshRequest(indices), l)).thenApply(r -> null);
+    }
+
+    @Override public CompletableFuture<Map<String, Object>> clusterHealth() {
+        return ListenerFuture.<ClusterHealthResponse>listen("clusterHealth failed",
+            l -> internalClient.admin().cluster().health(new ClusterHealthRequest(), l)).thenApply(EsTransportClient::healthMap);
+    }
+
+    @Override public CompletableFuture<Map<String, Object>> waitForStatus(HealthWait wait) {
+        return wait.poll(timeoutMillis -> ListenerFuture.<ClusterHealthResponse>listen("waitForStatus failed",
+            l -> internalClient.admin().cluster().health(wait.transportRequest(timeoutMillis), l)).thenApply(EsTransportClient::healthMap),
+            cause -> cause instanceof NoNodeAvailableException || cause instanceof ConnectTransportException);
+    }
+
+    @Override public CompletableFuture<IndexResponse> index(IndexRequest request) {
+        return listen("index failed", l -> internalClient.index(request, l));
+    }
+
+    @Override public CompletableFuture<UpdateResponse> update(UpdateRequest request) {
+        return listen("update failed", l -> internalClient.update(request, l));
+    }
+
+    @Override public CompletableFuture<DeleteResponse> delete(DeleteRequest request) {
+        return listen("delete failed", l -> internalClient.delete(request, l));
+    }
+
+    @Override public CompletableFuture<BulkResponse> bulk(BulkRequest request) {
+        return listen("bulk failed", l -> internalClient.bulk(request, l));
+    }
+
+    @Override public CompletableFuture<GetResponse> get(GetRequest request) {
+        return listen("get failed", l -> internalClient.get(request, l));
+    }
+
+    @Override public CompletableFuture<MultiGetResponse> multiGet(MultiGetRequest request) {
+        return listen("multiGet failed", l -> internalClient.multiGet(request, l));
+    }
+
+    @Override public CompletableFuture<SearchResponse> search(SearchRequest request) {
+        return listen("search failed", l -> internalClient.search(request, l));
+    }
+
+    @Override public CompletableFuture<MultiSearchResponse> multiSearch(MultiSearchRequest request) {
+        return listen("multiSearch failed", l -> internalClient.multiSearch(request, l));
+    }
+
+    @Override public CompletableFuture<SearchResponse> searchScroll(SearchScrollRequest request) {
+        return listen("searchScroll failed", l -> internalClient.searchScroll(request, l));
+    }
+
+    @Override public CompletableFuture<ClearScrollResponse> clearScroll(ClearScrollRequest request) {
+        return listen("clearScroll failed", l -> internalClient.clearScroll(request, l));
+    }
+}
@@ -1,9 +1,11 @@
 package io.polyglotted.common.es.transport;
 
 import com.google.common.collect.ImmutableMap;
+import io.polyglotted.common.es.AsyncElasticClient;
 import io.polyglotted.common.es.ElasticClient;
-import lombok.RequiredArgsConstructor;
+import io.polyglotted.common.es.HealthWait;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
@@ -12,6 +14,8 @@ import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
 import org.elasticsearch.action.admin.indices.exists.types.TypesExistsRequest;
+import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
 import org.elasticsearch.action.admin.indices.template.get.GetIndexTemplatesResponse;
@@ -35,7 +39,6 @@ import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.cluster.metadata.AliasMetaData;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
@@ -48,6 +51,7 @@ import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.reindex.DeleteByQueryAction;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -63,11 +67,28 @@ import static org.elasticsearch.client.Requests.refreshRequest;
 import static org.elasticsearch.common.xcontent.ToXContent.EMPTY_PARAMS;
 import static org.elasticsearch.common.xcontent.XContentType.JSON;
 
-@RequiredArgsConstructor
+@Slf4j
 public class EsTransportClient implements ElasticClient {
     private final Client internalClient;
+    private final Closeable discovery;
+    private final AsyncElasticClient asyncClient;
 
-    @Override public void close() { internalClient.close(); }
+    public EsTransportClient(Client internalClient) { this(internalClient, null); }
+
+    public EsTransportClient(Client internalClient, Closeable discovery) {
+        this.internalClient = internalClient;
+        this.discovery = discovery;
+        this.asyncClient = new EsTransportAsyncClient(internalClient);
+    }
+
+    @Override public void close() {
+        try {
+            if (discovery != null) { discovery.close(); }
+        } catch (IOException ex) { log.warn("failed to close ec2 node discovery", ex); }
+        finally { internalClient.close(); }
+    }
+
+    @Override public AsyncElasticClient async() { return asyncClient; }
 
     @Override public boolean indexExists(String index) {
         try {
@@ -82,14 +103,20 @@ public class EsTransportClient implements ElasticClient {
     }
 
     @Override public Set<String> getIndices(String alias) {
-        Set<String> indices = new HashSet<>();
-        Iterator<String> indexIt = getMeta(alias).getIndices().keysIt();
-        while (indexIt.hasNext()) { indices.add(indexIt.next()); }
-        return indices;
+        try {
+            return indexNames(internalClient.admin().indices().getIndex(aliasesOnly(alias)).actionGet());
+        } catch (Exception ex) { throw handleEx("getIndices failed", ex); }
+    }
+
+    static GetIndexRequest aliasesOnly(String... indices) {
+        return new GetIndexRequest().indices(indices).features(GetIndexRequest.Feature.ALIASES).indicesOptions(lenientExpandOpen());
     }
 
-    @Override @SneakyThrows(IOException.class) public String getIndexMeta(String... indices) {
-        MetaData indexMetaDatas = getMeta(indices);
+    static Set<String> indexNames(GetIndexResponse response) { return new HashSet<>(Arrays.asList(response.indices())); }
+
+    @Override public String getIndexMeta(String... indices) { return indexMetaJson(getMeta(indices)); }
+
+    @SneakyThrows(IOException.class) static String indexMetaJson(MetaData indexMetaDatas) {
         XContentBuilder builder = XContentFactory.jsonBuilder();
 
         builder.startArray();
@@ -132,17 +159,15 @@ public class EsTransportClient implements ElasticClient {
     }
 
     @Override @SneakyThrows(IOException.class) public String getSettings(String... indices) {
-        MetaData indexMetaDatas = getMeta(indices);
+        ImmutableOpenMap<String, Settings> indexSettings = getIndexSettings(indices);
         XContentBuilder builder = XContentFactory.jsonBuilder();
 
         builder.startObject();
-        ImmutableOpenMap<String, IndexMetaData> getIndices = indexMetaDatas.getIndices();
-        Iterator<String> indexIt = getIndices.keysIt();
+        Iterator<String> indexIt = indexSettings.keysIt();
         while (indexIt.hasNext()) {
             String index = indexIt.next();
-            IndexMetaData metaData = getIndices.get(index);
             builder.startObject(index).startObject("settings");
-            Settings settings = metaData.getSettings();
+            Settings settings = indexSettings.get(index);
             settings.toXContent(builder, EMPTY_PARAMS);
             builder.endObject().endObject();
         }
@@ -151,14 +176,10 @@ public class EsTransportClient implements ElasticClient {
     }
 
     @Override @SneakyThrows(IOException.class) public String getMapping(String index, String type) {
-        ImmutableOpenMap<String, IndexMetaData> getIndices = getMeta(index).getIndices();
-        Iterator<String> indexIt = getIndices.keysIt();
+        Iterator<ImmutableOpenMap<String, MappingMetaData>> indexIt = getTypeMappings(index, type).valuesIt();
         while (indexIt.hasNext()) {
-            ImmutableOpenMap<String, MappingMetaData> mappings = getIndices.get(indexIt.next()).getMappings();
-            Iterator<String> mIt = mappings.keysIt();
-            while (mIt.hasNext()) {
-                if (type.equals(mIt.next())) { return mappings.get(type).source().string(); }
-            }
+            MappingMetaData mapping = indexIt.next().get(type);
+            if (mapping != null) { return mapping.source().string(); }
         }
         return null;
     }
@@ -179,10 +200,25 @@ public class EsTransportClient implements ElasticClient {
 
     private MetaData getMeta(String... indices) {
         try {
-            return internalClient.admin().cluster().prepareState().setIndices(indices).execute().actionGet().getState().metaData();
+            return internalClient.admin().cluster().prepareState().clear().setMetaData(true)
+                .setIndices(indices).execute().actionGet().getState().metaData();
         } catch (Exception ex) { throw handleEx("getMeta failed", ex); }
     }
 
+    private ImmutableOpenMap<String, Settings> getIndexSettings(String... indices) {
+        try {
+            return internalClient.admin().indices().prepareGetSettings(indices).setIndicesOptions(lenientExpandOpen())
+                .execute().actionGet().getIndexToSettings();
+        } catch (Exception ex) { throw handleEx("getSettings failed", ex); }
+    }
+
+    private ImmutableOpenMap<String, ImmutableOpenMap<String, MappingMetaData>> getTypeMappings(String index, String type) {
+        try {
+            return internalClient.admin().indices().prepareGetMappings(index).setTypes(type).setIndicesOptions(lenientExpandOpen())
+                .execute().actionGet().getMappings();
+        } catch (Exception ex) { throw handleEx("getMapping failed", ex); }
+    }
+
     @Override public void createIndex(CreateIndexRequest request) {
         try {
             checkState(internalClient.admin().indices().create(request).actionGet().isAcknowledged(), "unable to create index for " + request.index());
@@ -225,36 +261,40 @@ public class EsTransportClient implements ElasticClient {
     }
 
     @Override public void waitForStatus(String status) {
-        try {
-            ClusterHealthResponse clusterHealth = internalClient.admin().cluster().prepareHealth().setWaitForNoRelocatingShards(true)
-                .setWaitForStatus(ClusterHealthStatus.fromString(status)).execute().actionGet();
-            checkState(clusterHealth.getStatus() != ClusterHealthStatus.RED, "cluster has errors");
-        } catch (Exception ex) { throw handleEx("waitForStatus failed", ex); }
+        Map<String, Object> health = waitForStatus(HealthWait.forStatus(status).noRelocatingShards());
+        checkState(!"red".equals(health.get("status")), "cluster has errors");
     }
 
+    @Override public Map<String, Object> waitForStatus(HealthWait wait) { return HealthWait.await(async().waitForStatus(wait)); }
+
     @Override public Map<String, Object> clusterHealth() {
         try {
-            ClusterHealthResponse health = internalClient.admin().cluster().health(new ClusterHealthRequest()).actionGet();
-            return ImmutableMap.<String, Object>builder()
-                .put("cluster_name", health.getClusterName())
-                .put("status", health.getStatus().name().toLowerCase(Locale.ROOT))
-                .put("timed_out", health.isTimedOut())
-                .put("number_of_nodes", health.getNumberOfNodes())
-                .put("number_of_data_nodes", health.getNumberOfDataNodes())
-                .put("active_primary_shards", health.getActivePrimaryShards())
-                .put("active_shards", health.getActiveShards())
-                .put("relocating_shards", health.getRelocatingShards())
-                .put("initializing_shards", health.getInitializingShards())
-                .put("unassigned_shards", health.getUnassignedShards())
-                .put("delayed_unassigned_shards", health.getDelayedUnassignedShards())
-                .put("number_of_pending_tasks", health.getNumberOfPendingTasks())
-                .put("number_of_in_flight_fetch", health.getNumberOfInFlightFetch())
-                .put("task_max_waiting_in_queue_millis", health.getTaskMaxWaitingTime().millis() == 0 ? "-" : health.getTaskMaxWaitingTime().getStringRep())
-                .put("active_shards_percent_as_number", String.format(Locale.ROOT, "%1.1f%%", health.getActiveShardsPercent()))
-                .build();
+            return healthMap(internalClient.admin().cluster().health(new ClusterHealthRequest()).actionGet());
         } catch (Exception ex) { throw handleEx("clusterHealth failed", ex); }
     }
 
+    @Override public Map<String, Object> connectionPoolStats() { return ImmutableMap.of(); }
+
+    static Map<String, Object> healthMap(ClusterHealthResponse health) {
+        return ImmutableMap.<String, Object>builder()
+            .put("cluster_name", health.getClusterName())
+            .put("status", health.getStatus().name().toLowerCase(Locale.ROOT))
+            .put("timed_out", health.isTimedOut())
+            .put("number_of_nodes", health.getNumberOfNodes())
+            .put("number_of_data_nodes", health.getNumberOfDataNodes())
+            .put("active_primary_shards", health.getActivePrimaryShards())
+            .put("active_shards", health.getActiveShards())
+            .put("relocating_shards", health.getRelocatingShards())
+            .put("initializing_shards", health.getInitializingShards())
+            .put("unassigned_shards", health.getUnassignedShards())
+            .put("delayed_unassigned_shards", health.getDelayedUnassignedShards())
+            .put("number_of_pending_tasks", health.getNumberOfPendingTasks())
+            .put("number_of_in_flight_fetch", health.getNumberOfInFlightFetch())
+            .put("task_max_waiting_in_queue_millis", health.getTaskMaxWaitingTime().millis() == 0 ? "-" : health.getTaskMaxWaitingTime().getStringRep())
+            .put("active_shards_percent_as_number", String.format(Locale.ROOT, "%1.1f%%", health.getActiveShardsPercent()))
+            .build();
+    }
+
     @Override public void buildPipeline(String id, String json) {
         try {
             checkState(internalClient.admin().cluster().preparePutPipeline(id, new BytesArray(json), JSON)
@@ -350,6 +390,10 @@ public class EsTransportClient implements ElasticClient {
         throw new UnsupportedOperationException();
     }
 
+    @Override public Map<String, Object> filteredGet(String endpoint, String methodName, String... filterPaths) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override public String simplePost(String endpoint, String body, String methodName) {
         throw new UnsupportedOperationException();
     }
@@ -0,0 +1,117 @@
+package io.polyglotted.common.test.aws;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class FakeAmazonS3 extends AbstractAmazonS3 {
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final AtomicInteger versions = new AtomicInteger();
+    private final AtomicLong failAt = new AtomicLong(-1);
+    final List<long[]> ranges = new CopyOnWriteArrayList<>();
+    final AtomicInteger gets = new AtomicInteger();
+    final AtomicInteger metadataCalls = new AtomicInteger();
+
+    FakeAmazonS3 put(String bucket, String key, byte[] content) {
+        objects.put(bucket + "/" + key, new StoredObject("etag-" + versions.incrementAndGet(), content));
+        return this;
+    }
+
+    void failOnceAt(long position) { failAt.set(position); }
+
+    static byte[] content(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) { bytes[i] = (byte) (i * 31 + i / 251); }
+        return bytes;
+    }
+
+    @Override public ObjectMetadata getObjectMetadata(String bucket, String key) {
+        metadataCalls.incrementAndGet();
+        return metadata(stored(bucket, key));
+    }
+
+    @Override public S3Object getObject(String bucket, String key) { return getObject(new GetObjectRequest(bucket, key)); }
+
+    @Override public S3Object getObject(GetObjectRequest request) {
+        gets.incrementAndGet();
+        StoredObject stored = stored(request.getBucketName(), request.getKey());
+        if (!request.getMatchingETagConstraints().isEmpty() && !request.getMatchingETagConstraints().contains(stored.eTag)) { return null; }
+        long[] range = request.getRange() == null ? new long[]{0, stored.content.length - 1} : request.getRange();
+        long end = Math.min(range[1], stored.content.length - 1);
+        ranges.add(new long[]{range[0], end});
+
+        S3Object object = new S3Object();
+        object.setBucketName(request.getBucketName());
+        object.setKey(request.getKey());
+        object.setObjectMetadata(metadata(stored));
+        InputStream in = new ByteArrayInputStream(stored.content, (int) range[0], (int) (end - range[0] + 1));
+        object.setObjectContent(new S3ObjectInputStream(new FailingInputStream(in, range[0]), new HttpGet()));
+        return object;
+    }
+
+    private StoredObject stored(String bucket, String key) {
+        StoredObject stored = objects.get(bucket + "/" + key);
+        if (stored == null) { throw new IllegalArgumentException("no such key " + bucket + "/" + key); }
+        return stored;
+    }
+
+    private static ObjectMetadata metadata(StoredObject stored) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(stored.content.length);
+        metadata.setHeader(Headers.ETAG, stored.eTag);
+        return metadata;
+    }
+
+    private static final class StoredObject {
+        private final String eTag;
+        private final byte[] content;
+
+        StoredObject(String eTag, byte[] content) {
+            this.eTag = eTag;
+            this.content = content;
+        }
+    }
+
+    private final class FailingInputStream extends InputStream {
+        private final InputStream in;
+        private long position;
+
+        FailingInputStream(InputStream in, long position) {
+            this.in = in;
+            this.position = position;
+        }
+
+        @Override public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override public int read(byte[] bytes, int off, int len) throws IOException {
+            long fail = failAt.get();
+            if (fail >= 0 && position <= fail && fail < position + len) {
+                if (position == fail) {
+                    failAt.compareAndSet(fail, -1);
+                    throw new IOException("connection reset at " + fail);
+                }
+                len = (int) (fail - position);
+            }
+            int read = in.read(bytes, off, len);
+            if (read > 0) { position += read; }
+            return read;
+        }
+    }
+}
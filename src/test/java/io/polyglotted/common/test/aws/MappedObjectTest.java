@@ -0,0 +1,77 @@
+package io.polyglotted.common.test.aws;
+
+import com.google.common.io.ByteStreams;
+import io.polyglotted.common.aws.MappedObject;
+import io.polyglotted.common.aws.RangedDownloader;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static io.polyglotted.common.test.aws.FakeAmazonS3.content;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class MappedObjectTest {
+
+    @Test
+    public void readsAcrossSegmentBoundaries() throws Exception {
+        byte[] content = content(10_000);
+        FakeAmazonS3 s3 = new FakeAmazonS3().put("bucket", "key", content);
+        Path file = Files.createTempFile("mapped-", ".bin");
+        try {
+            try (RangedDownloader downloader = new RangedDownloader(2, 64 * 1024, 2);
+                 FileChannel channel = FileChannel.open(file, WRITE)) {
+                downloader.download(s3, "bucket", "key", channel);
+            }
+            MappedObject mapped = MappedObject.map(file, 12);
+            Files.delete(file);
+
+            List<ByteBuffer> segments = mapped.segments();
+            assertThat(segments.size(), is(3));
+            assertThat(segments.get(2).remaining(), is(10_000 - 2 * 4096));
+            for (long position : new long[]{0, 4095, 4096, 8191, 8192, 9999}) { assertThat(mapped.get(position), is(content[(int) position])); }
+
+            try (InputStream in = mapped.inputStream()) {
+                byte[] chunk = new byte[5000];
+                assertThat(in.read(chunk, 0, chunk.length), is(4096));
+                assertThat(ByteStreams.toByteArray(in).length, is(10_000 - 4096));
+            }
+            try (InputStream in = mapped.inputStream()) {
+                assertThat(in.skip(8190), is(8190L));
+                byte[] chunk = new byte[4];
+                ByteStreams.readFully(in, chunk);
+                assertThat(chunk, is(new byte[]{content[8190], content[8191], content[8192], content[8193]}));
+            }
+            try (InputStream in = mapped.inputStream()) { assertThat(ByteStreams.toByteArray(in), is(content)); }
+        } finally { Files.deleteIfExists(file); }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void singleBufferRejectsSegmentedObjects() throws Exception {
+        Path file = Files.createTempFile("mapped-", ".bin");
+        try {
+            Files.write(file, content(5000));
+            MappedObject.map(file, 12).buffer();
+        } finally { Files.deleteIfExists(file); }
+    }
+
+    @Test
+    public void getOutsideObjectFails() throws Exception {
+        Path file = Files.createTempFile("mapped-", ".bin");
+        try {
+            Files.write(file, content(5000));
+            MappedObject mapped = MappedObject.map(file);
+            assertThat(mapped.buffer().remaining(), is(5000));
+            try {
+                mapped.get(5000);
+                throw new AssertionError("expected failure");
+            } catch (IndexOutOfBoundsException expected) { assertThat(mapped.size(), is(5000L)); }
+        } finally { Files.deleteIfExists(file); }
+    }
+}
@@ -0,0 +1,81 @@
+package io.polyglotted.common.test.aws;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.google.common.io.ByteStreams;
+import io.polyglotted.common.aws.RangedDownloader;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static io.polyglotted.common.test.aws.FakeAmazonS3.content;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+
+public class RangedDownloaderTest {
+    private static final int PART = 64 * 1024;
+
+    @Test
+    public void splitsObjectIntoRanges() throws Exception {
+        byte[] content = content(200_000);
+        FakeAmazonS3 s3 = new FakeAmazonS3().put("bucket", "key", content);
+        try (RangedDownloader downloader = new RangedDownloader(3, PART, 2)) {
+            assertThat(download(downloader, s3, s3.getObjectMetadata("bucket", "key")), is(content));
+            assertThat(ranges(s3), is("0-65535,65536-131071,131072-196607,196608-199999"));
+
+            s3.ranges.clear();
+            try (InputStream in = downloader.open(s3, "bucket", "key")) { assertThat(ByteStreams.toByteArray(in), is(content)); }
+            assertThat(ranges(s3), is("0-65535,65536-131071,131072-196607,196608-199999"));
+        }
+    }
+
+    @Test
+    public void resumesRangeAfterError() throws Exception {
+        byte[] content = content(200_000);
+        FakeAmazonS3 s3 = new FakeAmazonS3().put("bucket", "key", content);
+        s3.failOnceAt(100_000);
+        try (RangedDownloader downloader = new RangedDownloader(3, PART, 2)) {
+            assertThat(download(downloader, s3, s3.getObjectMetadata("bucket", "key")), is(content));
+        }
+        List<String> requested = new ArrayList<>();
+        for (long[] range : s3.ranges) { requested.add(range[0] + "-" + range[1]); }
+        assertThat(requested, hasItem("100000-131071"));
+        assertThat(s3.gets.get(), is(5));
+    }
+
+    @Test
+    public void failsWhenObjectChangesMidDownload() throws Exception {
+        FakeAmazonS3 s3 = new FakeAmazonS3().put("bucket", "key", content(200_000));
+        ObjectMetadata metadata = s3.getObjectMetadata("bucket", "key");
+        s3.put("bucket", "key", content(200_000));
+        try (RangedDownloader downloader = new RangedDownloader(3, PART, 2)) {
+            download(downloader, s3, metadata);
+            throw new AssertionError("expected failure");
+        } catch (IOException expected) { assertThat(expected.getMessage(), containsString("changed during download")); }
+    }
+
+    private static byte[] download(RangedDownloader downloader, FakeAmazonS3 s3, ObjectMetadata metadata) throws IOException {
+        Path file = Files.createTempFile("ranged-", ".bin");
+        try {
+            try (FileChannel channel = FileChannel.open(file, WRITE)) { downloader.download(s3, "bucket", "key", metadata, channel); }
+            return Files.readAllBytes(file);
+        } finally { Files.deleteIfExists(file); }
+    }
+
+    private static String ranges(FakeAmazonS3 s3) {
+        List<long[]> ranges = new ArrayList<>(s3.ranges);
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        StringBuilder result = new StringBuilder();
+        for (long[] range : ranges) { result.append(result.length() == 0 ? "" : ",").append(range[0]).append('-').append(range[1]); }
+        return result.toString();
+    }
+}
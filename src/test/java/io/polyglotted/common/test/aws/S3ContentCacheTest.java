@@ -0,0 +1,115 @@
+package io.polyglotted.common.test.aws;
+
+import com.google.common.io.ByteStreams;
+import io.polyglotted.common.aws.AwsConfig;
+import io.polyglotted.common.aws.S3ContentCache;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static io.polyglotted.common.test.aws.FakeAmazonS3.content;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class S3ContentCacheTest {
+    private static final AwsConfig CONFIG = new AwsConfig() {};
+    private FakeAmazonS3 s3;
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        s3 = new FakeAmazonS3();
+        directory = Files.createTempDirectory("s3-cache-");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) { for (Path file : files) { Files.delete(file); } }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void servesHitsWithinTtl() throws Exception {
+        byte[] content = content(100);
+        s3.put("bucket", "a", content);
+        S3ContentCache cache = cache(1000, TimeUnit.MINUTES.toMillis(1));
+
+        assertThat(read(cache, "a"), is(content));
+        assertThat(read(cache, "a"), is(content));
+        assertThat(s3.gets.get(), is(1));
+        assertThat(s3.metadataCalls.get(), is(1));
+        assertThat(cache.stats().get("hits"), is(1L));
+        assertThat(cache.stats().get("misses"), is(1L));
+    }
+
+    @Test
+    public void revalidatesAfterTtl() throws Exception {
+        s3.put("bucket", "a", content(100));
+        S3ContentCache cache = cache(1000, 0);
+
+        read(cache, "a");
+        read(cache, "a");
+        assertThat(s3.gets.get(), is(1));
+        assertThat(s3.metadataCalls.get(), is(2));
+        assertThat(cache.stats().get("revalidations"), is(1L));
+
+        byte[] changed = content(120);
+        s3.put("bucket", "a", changed);
+        assertThat(read(cache, "a"), is(changed));
+        assertThat(s3.gets.get(), is(2));
+        assertThat(cache.stats().get("misses"), is(2L));
+        assertThat(cacheFiles(), is(1));
+    }
+
+    @Test
+    public void evictsBeyondByteBudget() throws Exception {
+        s3.put("bucket", "a", content(100)).put("bucket", "b", content(100));
+        S3ContentCache cache = cache(150, TimeUnit.MINUTES.toMillis(1));
+
+        read(cache, "a");
+        read(cache, "b");
+        assertThat(cache.stats().get("entries"), is(1));
+        assertThat(cache.stats().get("bytes"), is(100L));
+        assertThat(cacheFiles(), is(1));
+
+        read(cache, "b");
+        assertThat(cache.stats().get("hits"), is(1L));
+        read(cache, "a");
+        assertThat(s3.gets.get(), is(3));
+    }
+
+    @Test
+    public void reloadsEntriesFromDisk() throws Exception {
+        byte[] content = content(100);
+        s3.put("bucket", "a", content);
+        read(cache(1000, TimeUnit.MINUTES.toMillis(1)), "a");
+
+        S3ContentCache reloaded = cache(1000, TimeUnit.MINUTES.toMillis(1));
+        assertThat(reloaded.stats().get("entries"), is(1));
+        assertThat(reloaded.stats().get("bytes"), is(100L));
+        assertThat(read(reloaded, "a"), is(content));
+        assertThat(s3.gets.get(), is(1));
+        assertThat(reloaded.stats().get("revalidations"), is(1L));
+    }
+
+    private S3ContentCache cache(long maxBytes, long ttlMillis) throws IOException {
+        return new S3ContentCache(config -> s3, directory, maxBytes, ttlMillis, TimeUnit.MILLISECONDS, false);
+    }
+
+    private static byte[] read(S3ContentCache cache, String key) throws IOException {
+        try (InputStream in = cache.open(CONFIG, "bucket", key)) { return ByteStreams.toByteArray(in); }
+    }
+
+    private int cacheFiles() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.obj")) { for (Path ignored : files) { count++; } }
+        return count;
+    }
+}
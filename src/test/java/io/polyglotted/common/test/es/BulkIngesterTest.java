@@ -0,0 +1,121 @@
+package io.polyglotted.common.test.es;
+
+import io.polyglotted.common.es.BulkIngester;
+import io.polyglotted.common.es.ElasticClient;
+import io.polyglotted.common.es.ElasticException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.index.shard.ShardId;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class BulkIngesterTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void closeKeepsFlushBlockedOnPermit() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        List<DocWriteRequest<?>> failures = new CopyOnWriteArrayList<>();
+        AtomicReference<BulkRequest> heldRequest = new AtomicReference<>();
+        AtomicReference<ActionListener<BulkResponse>> heldListener = new AtomicReference<>();
+        CountDownLatch firstSent = new CountDownLatch(1);
+        ElasticClient client = (ElasticClient) Proxy.newProxyInstance(ElasticClient.class.getClassLoader(), new Class<?>[]{ElasticClient.class},
+            (proxy, method, args) -> {
+                if (!"bulkAsync".equals(method.getName()) || args.length != 2) { throw new UnsupportedOperationException(method.getName()); }
+                BulkRequest request = (BulkRequest) args[0];
+                ActionListener<BulkResponse> listener = (ActionListener<BulkResponse>) args[1];
+                batchSizes.add(request.numberOfActions());
+                if (batchSizes.size() == 1) {
+                    heldRequest.set(request);
+                    heldListener.set(listener);
+                    firstSent.countDown();
+                }
+                else { listener.onResponse(success(request)); }
+                return null;
+            });
+
+        BulkIngester ingester = BulkIngester.builder(client, (request, cause) -> failures.add(request))
+            .flushInterval(20, TimeUnit.MILLISECONDS).concurrentRequests(1).build();
+        ingester.add(index(0));
+        assertThat(firstSent.await(5, TimeUnit.SECONDS), is(true));
+        ingester.add(index(1));
+        Thread.sleep(200);
+
+        Thread closer = new Thread(ingester::close);
+        closer.start();
+        Thread.sleep(100);
+        heldListener.get().onResponse(success(heldRequest.get()));
+        closer.join(5_000);
+
+        assertThat(closer.isAlive(), is(false));
+        assertThat(failures, is(empty()));
+        assertThat(batchSizes, contains(1, 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void addsRacingCloseAreSentOrFailed() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            AtomicInteger sent = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            AtomicInteger accepted = new AtomicInteger();
+            ElasticClient client = (ElasticClient) Proxy.newProxyInstance(ElasticClient.class.getClassLoader(), new Class<?>[]{ElasticClient.class},
+                (proxy, method, args) -> {
+                    BulkRequest request = (BulkRequest) args[0];
+                    sent.addAndGet(request.numberOfActions());
+                    ((ActionListener<BulkResponse>) args[1]).onResponse(success(request));
+                    return null;
+                });
+            BulkIngester ingester = BulkIngester.builder(client, (request, cause) -> failed.incrementAndGet()).bulkActions(7).build();
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> adders = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread adder = new Thread(() -> {
+                    started.countDown();
+                    try {
+                        for (int i = 0; ; i++) {
+                            ingester.add(index(i));
+                            accepted.incrementAndGet();
+                        }
+                    } catch (ElasticException closed) { /* expected once closed */ }
+                });
+                adder.start();
+                adders.add(adder);
+            }
+            started.await();
+            ingester.close();
+            for (Thread adder : adders) { adder.join(5_000); }
+            assertThat(sent.get() + failed.get(), is(accepted.get()));
+        }
+    }
+
+    private static IndexRequest index(int id) { return new IndexRequest("idx", "doc", String.valueOf(id)).source(singletonMap("i", id)); }
+
+    private static BulkResponse success(BulkRequest request) {
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new BulkItemResponse(i, DocWriteRequest.OpType.INDEX,
+                new IndexResponse(new ShardId("idx", "_na_", 0), "doc", request.requests().get(i).id(), 1, true));
+        }
+        return new BulkResponse(items, 1);
+    }
+}
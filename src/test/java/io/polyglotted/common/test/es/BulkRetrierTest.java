@@ -0,0 +1,89 @@
+package io.polyglotted.common.test.es;
+
+import io.polyglotted.common.es.BulkRetrier;
+import io.polyglotted.common.es.ElasticClient;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.shard.ShardId;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class BulkRetrierTest {
+
+    @Test
+    public void retriesOnlyRejectedItems() {
+        List<Integer> batchSizes = new ArrayList<>();
+        ElasticClient client = bulkClient(request -> {
+            batchSizes.add(request.numberOfActions());
+            boolean reject = batchSizes.size() == 1;
+            List<?> requests = request.requests();
+            BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+            for (int i = 0; i < items.length; i++) {
+                IndexRequest item = (IndexRequest) requests.get(i);
+                items[i] = (reject && Integer.parseInt(item.id()) % 2 == 0) ? rejected(i, item) : success(i, item);
+            }
+            return new BulkResponse(items, 1);
+        });
+
+        BulkResponse response = new BulkRetrier(3, 1, 2).execute(client, bulkOf(6));
+        assertThat(batchSizes, contains(6, 3));
+        assertThat(response.hasFailures(), is(false));
+        for (int i = 0; i < 6; i++) {
+            assertThat(response.getItems()[i].getItemId(), is(i));
+            assertThat(response.getItems()[i].getId(), is(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void stopsAfterRetryBudget() {
+        List<Integer> batchSizes = new ArrayList<>();
+        ElasticClient client = bulkClient(request -> {
+            batchSizes.add(request.numberOfActions());
+            BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+            for (int i = 0; i < items.length; i++) { items[i] = rejected(i, (IndexRequest) request.requests().get(i)); }
+            return new BulkResponse(items, 1);
+        });
+
+        BulkResponse response = new BulkRetrier(2, 1, 2).execute(client, bulkOf(2));
+        assertThat(batchSizes, contains(2, 2, 2));
+        assertThat(response.hasFailures(), is(true));
+    }
+
+    private static BulkRequest bulkOf(int count) {
+        BulkRequest request = new BulkRequest();
+        for (int i = 0; i < count; i++) { request.add(new IndexRequest("idx", "doc", String.valueOf(i)).source(singletonMap("i", i))); }
+        return request;
+    }
+
+    private static BulkItemResponse success(int itemId, IndexRequest request) {
+        return new BulkItemResponse(itemId, DocWriteRequest.OpType.INDEX,
+            new IndexResponse(new ShardId("idx", "_na_", 0), "doc", request.id(), 1, true));
+    }
+
+    private static BulkItemResponse rejected(int itemId, IndexRequest request) {
+        return new BulkItemResponse(itemId, DocWriteRequest.OpType.INDEX,
+            new BulkItemResponse.Failure("idx", "doc", request.id(), new EsRejectedExecutionException("rejected")));
+    }
+
+    private static ElasticClient bulkClient(Function<BulkRequest, BulkResponse> bulk) {
+        return (ElasticClient) Proxy.newProxyInstance(ElasticClient.class.getClassLoader(), new Class<?>[]{ElasticClient.class},
+            (proxy, method, args) -> {
+                if ("bulk".equals(method.getName()) && args.length == 1) { return bulk.apply((BulkRequest) args[0]); }
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+}
@@ -0,0 +1,84 @@
+package io.polyglotted.common.test.es;
+
+import io.polyglotted.common.es.CachingElasticClient;
+import io.polyglotted.common.es.ElasticClient;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class CachingElasticClientTest {
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ElasticClient client = new CachingElasticClient(delegate(calls, release, true), 100, 1, TimeUnit.MINUTES);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) { results.add(executor.submit(() -> client.getIndexMeta("idx"))); }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> result : results) { assertThat(result.get(5, TimeUnit.SECONDS), is("meta-idx")); }
+        } finally { executor.shutdownNow(); }
+        assertThat(calls.get(), is(1));
+        assertThat(client.getIndexMeta("idx"), is("meta-idx"));
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    public void negativeAnswersAreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        ElasticClient client = new CachingElasticClient(delegate(calls, new CountDownLatch(0), false), 100, 1, TimeUnit.MINUTES);
+
+        assertThat(client.indexExists("idx"), is(false));
+        assertThat(client.indexExists("idx"), is(false));
+        assertThat(calls.get(), is(2));
+    }
+
+    @Test
+    public void simplePostInvalidatesIndices() {
+        AtomicReference<String> aliased = new AtomicReference<>("old");
+        ElasticClient delegate = (ElasticClient) Proxy.newProxyInstance(ElasticClient.class.getClassLoader(), new Class<?>[]{ElasticClient.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getIndices": return Collections.singleton(aliased.get());
+                    case "simplePost": aliased.set("new"); return "{\"acknowledged\":true}";
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        ElasticClient client = new CachingElasticClient(delegate, 100, 1, TimeUnit.MINUTES);
+
+        assertThat(client.getIndices("alias"), contains("old"));
+        client.simplePost("/_aliases", "{\"actions\":[{\"add\":{\"index\":\"new\",\"alias\":\"alias\"}}]}", "updateAlias");
+        assertThat(client.getIndices("alias"), contains("new"));
+    }
+
+    private static ElasticClient delegate(AtomicInteger calls, CountDownLatch release, boolean exists) {
+        return (ElasticClient) Proxy.newProxyInstance(ElasticClient.class.getClassLoader(), new Class<?>[]{ElasticClient.class},
+            (proxy, method, args) -> {
+                calls.incrementAndGet();
+                release.await();
+                switch (method.getName()) {
+                    case "getIndexMeta": return "meta-" + ((String[]) args[0])[0];
+                    case "indexExists": return exists;
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
@@ -0,0 +1,62 @@
+package io.polyglotted.common.test.es;
+
+import io.polyglotted.common.es.CoalescingElasticClient;
+import io.polyglotted.common.es.ElasticClient;
+import io.polyglotted.common.es.rest.EsRestClient;
+import io.polyglotted.common.test.es.fake.FakeElasticServer;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RestClient;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class CoalescingElasticClientTest {
+    private FakeElasticServer server;
+
+    @BeforeClass
+    public void startServer() { server = FakeElasticServer.start(); }
+
+    @AfterClass
+    public void stopServer() { server.close(); }
+
+    @Test
+    public void foldsTypedAndUntypedGetsIntoOneMultiGet() throws Exception {
+        try (ElasticClient rest = EsRestClient.builder(RestClient.builder(server.httpHost()).build()).compression(0).build()) {
+            rest.index(new IndexRequest("coalesced", "doc", "1").source(singletonMap("name", "one")));
+            rest.index(new IndexRequest("coalesced", "doc", "2").source(singletonMap("name", "two")));
+
+            ElasticClient client = new CoalescingElasticClient(rest, 3, 5, TimeUnit.SECONDS);
+            List<GetRequest> requests = new ArrayList<>();
+            requests.add(new GetRequest("coalesced", "doc", "1"));
+            requests.add(new GetRequest("coalesced", null, "2"));
+            requests.add(new GetRequest("coalesced", "doc", "3"));
+
+            long before = server.stats().get("requests");
+            ExecutorService executor = Executors.newFixedThreadPool(requests.size());
+            try {
+                List<Future<GetResponse>> results = new ArrayList<>();
+                for (GetRequest request : requests) { results.add(executor.submit(() -> client.get(request))); }
+                assertThat(results.get(0).get(5, TimeUnit.SECONDS).getSourceAsMap().get("name"), is("one"));
+                GetResponse untyped = results.get(1).get(5, TimeUnit.SECONDS);
+                assertThat(untyped.isExists(), is(true));
+                assertThat(untyped.getType(), is("doc"));
+                assertThat(untyped.getSourceAsMap().get("name"), is("two"));
+                assertThat(results.get(2).get(5, TimeUnit.SECONDS).isExists(), is(false));
+            } finally { executor.shutdownNow(); }
+            assertThat(server.stats().get("requests") - before, is(1L));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.polyglotted.common.test.es;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Reservation;
+import io.polyglotted.common.es.discovery.Ec2HostsProvider;
+import io.polyglotted.common.es.discovery.Ec2NodesRefresher;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.transport.client.PreBuiltTransportClient;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+public class Ec2NodesRefresherTest {
+
+    @Test
+    public void refreshFollowsDiscoveredNodes() throws Exception {
+        System.setProperty("es.set.netty.runtime.available.processors", "false");
+        AtomicReference<List<String>> discovered = new AtomicReference<>(asList("127.0.0.2", "127.0.0.3"));
+        AtomicBoolean shutdown = new AtomicBoolean();
+        try (TransportClient client = new PreBuiltTransportClient(Settings.builder().put("client.transport.sniff", false).build())) {
+            Ec2NodesRefresher refresher = Ec2NodesRefresher.start(new Ec2HostsProvider(ec2(discovered, shutdown), Settings.EMPTY),
+                client, 9399, 1, TimeUnit.HOURS);
+
+            refresher.refresh();
+            assertThat(addresses(client), containsInAnyOrder("127.0.0.2", "127.0.0.3"));
+
+            discovered.set(asList("127.0.0.3", "127.0.0.4"));
+            refresher.refresh();
+            assertThat(addresses(client), containsInAnyOrder("127.0.0.3", "127.0.0.4"));
+
+            discovered.set(emptyList());
+            refresher.refresh();
+            assertThat(addresses(client), containsInAnyOrder("127.0.0.3", "127.0.0.4"));
+
+            discovered.set(asList("127.0.0.5", "unresolved-node.invalid"));
+            refresher.refresh();
+            assertThat(addresses(client), containsInAnyOrder("127.0.0.3", "127.0.0.4", "127.0.0.5"));
+
+            refresher.close();
+            assertThat(shutdown.get(), is(true));
+        }
+    }
+
+    private static List<String> addresses(TransportClient client) {
+        List<String> result = new ArrayList<>();
+        for (TransportAddress address : client.transportAddresses()) { result.add(address.getAddress()); }
+        return result;
+    }
+
+    private static AmazonEC2 ec2(AtomicReference<List<String>> discovered, AtomicBoolean shutdown) {
+        return (AmazonEC2) Proxy.newProxyInstance(AmazonEC2.class.getClassLoader(), new Class<?>[]{AmazonEC2.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "describeInstances":
+                        List<Instance> instances = new ArrayList<>();
+                        for (String address : discovered.get()) { instances.add(new Instance().withPrivateIpAddress(address)); }
+                        return new DescribeInstancesResult().withReservations(new Reservation().withInstances(instances));
+                    case "shutdown": shutdown.set(true); return null;
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
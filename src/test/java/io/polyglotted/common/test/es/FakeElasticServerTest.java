@@ -0,0 +1,106 @@
+package io.polyglotted.common.test.es;
+
+import io.polyglotted.common.es.BulkRetrier;
+import io.polyglotted.common.es.ElasticClient;
+import io.polyglotted.common.es.ElasticException;
+import io.polyglotted.common.es.HitStream;
+import io.polyglotted.common.es.rest.EsRestClient;
+import io.polyglotted.common.test.es.fake.FakeElasticServer;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class FakeElasticServerTest {
+    private FakeElasticServer server;
+
+    @BeforeClass
+    public void startServer() { server = FakeElasticServer.start(0, 42, 2); }
+
+    @AfterClass
+    public void stopServer() { server.close(); }
+
+    @Test
+    public void supportsIndexAndDocumentLifecycle() throws Exception {
+        try (ElasticClient client = restClient()) {
+            assertThat(client.clusterHealth().get("status"), is("green"));
+            client.createIndex("lifecycle", "{\"settings\":{\"number_of_shards\":1},\"aliases\":{\"life\":{}}}");
+            assertThat(client.indexExists("lifecycle"), is(true));
+            assertThat(client.getIndices("life"), contains("lifecycle"));
+            assertThat(client.getIndexMeta("lifecycle"), containsString("\"life\":{}"));
+            assertThat(client.getSettings("lifecycle"), containsString("\"number_of_shards\""));
+
+            client.index(new IndexRequest("lifecycle", "doc", "1").source(singletonMap("name", "one")));
+            assertThat(client.get(new GetRequest("lifecycle", "doc", "1")).getSourceAsMap().get("name"), is("one"));
+            assertThat(client.get(new GetRequest("lifecycle", "doc", "2")).isExists(), is(false));
+
+            client.buildPipeline("pipe", "{\"processors\":[]}");
+            assertThat(client.pipelineExists("pipe"), is(true));
+            client.deletePipeline("pipe");
+            assertThat(client.pipelineExists("pipe"), is(false));
+
+            client.dropIndex("lifecycle");
+            assertThat(client.indexExists("lifecycle"), is(false));
+        }
+    }
+
+    @Test
+    public void scrollsThroughBulkIndexedDocuments() throws Exception {
+        try (ElasticClient client = restClient()) {
+            BulkRequest bulk = new BulkRequest();
+            for (int i = 0; i < 25; i++) { bulk.add(new IndexRequest("scrolled", "doc", String.valueOf(i)).source(singletonMap("i", i))); }
+            assertThat(client.bulk(bulk).hasFailures(), is(false));
+
+            SearchRequest request = new SearchRequest("scrolled").source(new SearchSourceBuilder().size(10));
+            try (HitStream hits = HitStream.scroll(client, request, TimeValue.timeValueMinutes(1))) {
+                assertThat(hits.stream().count(), is(25L));
+            }
+            assertThat(request.scroll(), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void injectsRejectionsAndLatency() throws Exception {
+        try (ElasticClient client = restClient()) {
+            server.bulkItemRejectionRate(0.5);
+            BulkRequest bulk = new BulkRequest();
+            for (int i = 0; i < 20; i++) { bulk.add(new IndexRequest("rejected", "doc", String.valueOf(i)).source(singletonMap("i", i))); }
+            BulkResponse response = client.bulk(bulk, new BulkRetrier(20, 1, 5));
+            assertThat(response.hasFailures(), is(false));
+            server.bulkItemRejectionRate(0);
+
+            server.rejectionRate(1.0);
+            try {
+                client.clusterHealth();
+                throw new AssertionError("expected rejection");
+            } catch (ElasticException expected) {
+                assertThat(expected.getMessage().contains("429") || expected.getMessage().contains("rejected"), is(true));
+            } finally { server.rejectionRate(0); }
+
+            server.latency(50, 50, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+            client.clusterHealth();
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThan(40L));
+            server.latency(0, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private ElasticClient restClient() { return EsRestClient.builder(RestClient.builder(server.httpHost()).build()).compression(0).build(); }
+}
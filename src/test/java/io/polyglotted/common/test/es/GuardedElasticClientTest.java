@@ -0,0 +1,61 @@
+package io.polyglotted.common.test.es;
+
+import io.polyglotted.common.es.ElasticClient;
+import io.polyglotted.common.es.ElasticException;
+import io.polyglotted.common.es.ElasticOverloadedException;
+import io.polyglotted.common.es.GuardedElasticClient;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class GuardedElasticClientTest {
+
+    @Test
+    public void breakerOpensRejectsThenClosesAfterProbes() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AtomicInteger calls = new AtomicInteger();
+        GuardedElasticClient client = new GuardedElasticClient(delegate(failing, calls), 10, 1, 10, 5, TimeUnit.SECONDS,
+            50, 10, 200, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 2; i++) { assertThat(failure(client), instanceOf(ElasticException.class)); }
+        assertThat(client.guardStats().get("state"), is("open"));
+
+        assertThat(failure(client), instanceOf(ElasticOverloadedException.class));
+        assertThat(calls.get(), is(2));
+        assertThat(client.guardStats().get("rejected"), is(1L));
+
+        failing.set(false);
+        Thread.sleep(300);
+        client.clusterHealth();
+        assertThat(client.guardStats().get("state"), is("half_open"));
+        for (int i = 0; i < 4; i++) { client.clusterHealth(); }
+        assertThat(client.guardStats().get("state"), is("closed"));
+        assertThat(calls.get(), is(7));
+    }
+
+    private static Throwable failure(ElasticClient client) {
+        try {
+            client.clusterHealth();
+        } catch (ElasticException ex) { return ex; }
+        throw new AssertionError("expected failure");
+    }
+
+    private static ElasticClient delegate(AtomicBoolean failing, AtomicInteger calls) {
+        return (ElasticClient) Proxy.newProxyInstance(ElasticClient.class.getClassLoader(), new Class<?>[]{ElasticClient.class},
+            (proxy, method, args) -> {
+                if (!"clusterHealth".equals(method.getName())) { throw new UnsupportedOperationException(method.getName()); }
+                calls.incrementAndGet();
+                if (failing.get()) { throw new ElasticException("clusterHealth failed", new IOException("connection refused")); }
+                return Collections.singletonMap("status", "green");
+            });
+    }
+}
@@ -0,0 +1,88 @@
+package io.polyglotted.common.test.es;
+
+import io.polyglotted.common.es.AsyncElasticClient;
+import io.polyglotted.common.es.ElasticClient;
+import io.polyglotted.common.es.ElasticException;
+import io.polyglotted.common.es.HedgingElasticClient;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.index.get.GetResult;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class HedgingElasticClientTest {
+
+    @Test
+    public void slowPrimaryIsHedgedAndCancelled() throws Exception {
+        List<CompletableFuture<GetResponse>> attempts = new CopyOnWriteArrayList<>();
+        try (HedgingElasticClient client = hedging(attempts, attempt -> attempt == 0 ? new CompletableFuture<>() : done("hedged"))) {
+            assertThat(client.get(new GetRequest("idx", "doc", "1")).getId(), is("hedged"));
+            assertThat(attempts, hasSize(2));
+            assertThat(attempts.get(0).isCancelled(), is(true));
+
+            Map<?, ?> stats = (Map<?, ?>) client.hedgeStats().get("get");
+            assertThat(stats.get("hedges"), is(1L));
+            assertThat(stats.get("hedgeWins"), is(1L));
+        }
+    }
+
+    @Test
+    public void fastPrimaryIsNotHedged() throws Exception {
+        List<CompletableFuture<GetResponse>> attempts = new CopyOnWriteArrayList<>();
+        try (HedgingElasticClient client = hedging(attempts, attempt -> done("primary"))) {
+            assertThat(client.get(new GetRequest("idx", "doc", "1")).getId(), is("primary"));
+            Thread.sleep(100);
+            assertThat(attempts, hasSize(1));
+            assertThat(((Map<?, ?>) client.hedgeStats().get("get")).get("hedges"), is(0L));
+        }
+    }
+
+    @Test
+    public void failureOfEveryAttemptIsReported() throws Exception {
+        List<CompletableFuture<GetResponse>> attempts = new CopyOnWriteArrayList<>();
+        try (HedgingElasticClient client = hedging(attempts, attempt -> {
+            CompletableFuture<GetResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(new ElasticException("get failed: attempt " + attempt));
+            return future;
+        })) {
+            try {
+                client.get(new GetRequest("idx", "doc", "1"));
+                throw new AssertionError("expected failure");
+            } catch (ElasticException expected) { assertThat(expected.getMessage(), is("get failed: attempt 0")); }
+        }
+    }
+
+    private static HedgingElasticClient hedging(List<CompletableFuture<GetResponse>> attempts, IntFunction<CompletableFuture<GetResponse>> responses) {
+        AsyncElasticClient async = (AsyncElasticClient) Proxy.newProxyInstance(AsyncElasticClient.class.getClassLoader(),
+            new Class<?>[]{AsyncElasticClient.class}, (proxy, method, args) -> {
+                if (!"get".equals(method.getName())) { throw new UnsupportedOperationException(method.getName()); }
+                CompletableFuture<GetResponse> attempt = responses.apply(attempts.size());
+                attempts.add(attempt);
+                return attempt;
+            });
+        ElasticClient delegate = (ElasticClient) Proxy.newProxyInstance(ElasticClient.class.getClassLoader(), new Class<?>[]{ElasticClient.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "async": return async;
+                    case "close": return null;
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        return new HedgingElasticClient(delegate, 95.0, 1, 50, TimeUnit.MILLISECONDS, 100);
+    }
+
+    private static CompletableFuture<GetResponse> done(String id) {
+        return CompletableFuture.completedFuture(new GetResponse(new GetResult("idx", "doc", id, 1, true, null, null)));
+    }
+}
@@ -0,0 +1,107 @@
+package io.polyglotted.common.test.es;
+
+import com.google.common.collect.ImmutableMap;
+import io.polyglotted.common.es.rest.LatencyAwareHostSelector;
+import io.polyglotted.common.test.es.fake.FakeElasticServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class LatencyAwareHostSelectorTest {
+    private static final HttpHost A1 = new HttpHost("a1", 9200);
+    private static final HttpHost A2 = new HttpHost("a2", 9200);
+    private static final HttpHost B1 = new HttpHost("b1", 9200);
+    private static final HttpHost B2 = new HttpHost("b2", 9200);
+
+    @Test
+    public void refreshOnlyResetsHostsWhenSelectionChanges() {
+        List<HttpHost[]> updates = new CopyOnWriteArrayList<>();
+        try (LatencyAwareHostSelector selector = new LatencyAwareHostSelector("a",
+            ImmutableMap.of("a1", "a", "a2", "a", "b1", "b", "b2", "b"), TimeUnit.HOURS.toMillis(1), 3, 30_000, 3, 2)) {
+            selector.attach(updates::add, null, null, A1, A2, B1, B2);
+            record(selector, A1, 10);
+            record(selector, A2, 10);
+            record(selector, B1, 5);
+            record(selector, B2, 20);
+
+            selector.refresh();
+            assertThat(updates, hasSize(1));
+            assertThat(updates.get(0), arrayContainingInAnyOrder(A1, A2));
+
+            record(selector, A1, 12);
+            record(selector, A2, 8);
+            selector.refresh();
+            selector.refresh();
+            assertThat(updates, hasSize(1));
+
+            for (int i = 0; i < 3; i++) { selector.onFailure(A1); }
+            selector.refresh();
+            assertThat(updates, hasSize(2));
+            assertThat(updates.get(1), arrayContainingInAnyOrder(A2, B1));
+
+            record(selector, B2, 1);
+            selector.refresh();
+            assertThat(updates, hasSize(2));
+        }
+    }
+
+    @Test
+    public void narrowsToFastestHostsWithoutZone() throws Exception {
+        List<HttpHost[]> updates = new CopyOnWriteArrayList<>();
+        try (LatencyAwareHostSelector selector = new LatencyAwareHostSelector(null, ImmutableMap.of(), TimeUnit.HOURS.toMillis(1), 3, 30_000, 3, 2)) {
+            selector.attach(updates::add, null, null, A1, A2, B1, B2);
+            record(selector, A1, 10);
+            record(selector, A2, 10);
+            record(selector, B1, 25);
+            record(selector, B2, 12);
+
+            selector.refresh();
+            assertThat(updates, hasSize(1));
+            assertThat(updates.get(0), arrayContainingInAnyOrder(A1, A2, B2));
+            assertThat(selector.tracking(() -> asList(A1, A2, B1, B2)).sniffHosts(), containsInAnyOrder(A1, A2, B2));
+        }
+    }
+
+    @Test
+    public void repeatedUnavailableResponsesEjectHost() throws Exception {
+        List<HttpHost[]> updates = new CopyOnWriteArrayList<>();
+        try (FakeElasticServer server = FakeElasticServer.start().rejectionRate(1.0).rejectionStatus(503);
+             LatencyAwareHostSelector selector = new LatencyAwareHostSelector(null, ImmutableMap.of(), TimeUnit.HOURS.toMillis(1), 3, 30_000, 3, 1);
+             RestClient restClient = RestClient.builder(server.httpHost()).setHttpClientConfigCallback(selector::instrument)
+                 .setFailureListener(selector).build()) {
+            selector.attach(updates::add, null, null, server.httpHost(), A1);
+            for (int i = 0; i < 3; i++) {
+                try {
+                    restClient.performRequest("GET", "/_cluster/health");
+                    throw new AssertionError("expected unavailable");
+                } catch (ResponseException expected) {
+                    assertThat(expected.getResponse().getStatusLine().getStatusCode(), is(503));
+                }
+            }
+
+            selector.refresh();
+            @SuppressWarnings("unchecked") Map<String, Object> stats = (Map<String, Object>) selector.stats().get(server.httpHost().toURI());
+            assertThat(stats.get("ejected"), is(true));
+            assertThat(updates, hasSize(1));
+            assertThat(updates.get(0), arrayContaining(A1));
+        }
+    }
+
+    private static void record(LatencyAwareHostSelector selector, HttpHost host, long millis) {
+        for (int i = 0; i < 10; i++) { selector.success(host, TimeUnit.MILLISECONDS.toNanos(millis)); }
+    }
+}
@@ -0,0 +1,182 @@
+package io.polyglotted.common.test.es.fake;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.polyglotted.common.es.ElasticException;
+import io.polyglotted.common.test.es.fake.FakeElasticStore.Reply;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class FakeElasticServer implements AutoCloseable {
+    private final long seed;
+    private final AtomicLong connections = new AtomicLong();
+    private final FakeElasticStore store;
+    private final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+    private final EventLoopGroup workerGroup;
+    private final Channel channel;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long minLatencyNanos = 0;
+    private volatile long maxLatencyNanos = 0;
+    private volatile double rejectionRate = 0;
+    private volatile int rejectionStatus = 429;
+    private volatile double dropRate = 0;
+
+    private FakeElasticServer(int port, long seed, int workerThreads) {
+        this.seed = seed;
+        this.store = new FakeElasticStore(new Random(seed));
+        this.workerGroup = new NioEventLoopGroup(workerThreads);
+        try {
+            this.channel = new ServerBootstrap().group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpContentCompressor(), new HttpContentDecompressor(),
+                            new HttpObjectAggregator(100 * 1024 * 1024), new RequestHandler(connectionRandom()));
+                    }
+                }).bind(new InetSocketAddress("127.0.0.1", port)).sync().channel();
+        } catch (Exception ex) {
+            close();
+            throw new ElasticException("unable to start fake elastic server", ex);
+        }
+    }
+
+    public static FakeElasticServer start() { return start(0); }
+
+    public static FakeElasticServer start(int port) { return new FakeElasticServer(port, ThreadLocalRandom.current().nextLong(), 4); }
+
+    public static FakeElasticServer start(int port, long seed, int workerThreads) { return new FakeElasticServer(port, seed, workerThreads); }
+
+    public int port() { return ((InetSocketAddress) channel.localAddress()).getPort(); }
+
+    public HttpHost httpHost() { return new HttpHost("127.0.0.1", port(), "http"); }
+
+    public FakeElasticServer latency(long min, long max, TimeUnit unit) {
+        this.minLatencyNanos = unit.toNanos(min);
+        this.maxLatencyNanos = Math.max(unit.toNanos(max), minLatencyNanos);
+        return this;
+    }
+
+    public FakeElasticServer rejectionRate(double rate) { this.rejectionRate = rate; return this; }
+
+    public FakeElasticServer rejectionStatus(int status) { this.rejectionStatus = status; return this; }
+
+    public FakeElasticServer bulkItemRejectionRate(double rate) { store.bulkItemRejectionRate = rate; return this; }
+
+    public FakeElasticServer dropRate(double rate) { this.dropRate = rate; return this; }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> result = new HashMap<>();
+        result.put("requests", requests.get());
+        result.put("rejected", rejected.get());
+        result.put("dropped", dropped.get());
+        return result;
+    }
+
+    @Override public void close() {
+        if (channel != null) { channel.close().syncUninterruptibly(); }
+        bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        if (workerGroup != null) { workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly(); }
+    }
+
+    private Random connectionRandom() { return new Random(seed + connections.incrementAndGet() * 0x9E3779B97F4A7C15L); }
+
+    private long nextLatency(Random random) {
+        long min = minLatencyNanos, max = maxLatencyNanos;
+        return max <= min ? min : min + (long) (random.nextDouble() * (max - min));
+    }
+
+    private static FullHttpResponse toResponse(Reply reply, boolean head) throws IOException {
+        byte[] bytes = new byte[0];
+        if (reply.body != null && !head) {
+            @SuppressWarnings("unchecked") XContentBuilder builder = jsonBuilder().map((Map<String, Object>) reply.body);
+            bytes = BytesReference.toBytes(builder.bytes());
+        }
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.valueOf(reply.status), Unpooled.wrappedBuffer(bytes));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=UTF-8");
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, bytes.length);
+        return response;
+    }
+
+    private final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        private final Random random;
+
+        RequestHandler(Random random) { this.random = random; }
+
+        @Override protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+            requests.incrementAndGet();
+            if (random.nextDouble() < dropRate) {
+                dropped.incrementAndGet();
+                ctx.close();
+                return;
+            }
+            QueryStringDecoder decoder = new QueryStringDecoder(request.uri());
+            Map<String, String> params = new HashMap<>();
+            for (Map.Entry<String, List<String>> param : decoder.parameters().entrySet()) { params.put(param.getKey(), param.getValue().get(0)); }
+            String method = request.method().name();
+
+            Reply reply;
+            if (random.nextDouble() < rejectionRate) {
+                rejected.incrementAndGet();
+                reply = FakeElasticStore.error(rejectionStatus, "es_rejected_execution_exception", "rejected execution (injected by fake server)");
+            }
+            else { reply = store.handle(method, decoder.path(), params, ByteBufUtil.getBytes(request.content())); }
+
+            FullHttpResponse response = toResponse(reply, "HEAD".equals(method));
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            if (keepAlive) { response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE); }
+            long latency = nextLatency(random);
+            if (latency > 0) { ctx.executor().schedule(() -> write(ctx, response, keepAlive), latency, TimeUnit.NANOSECONDS); }
+            else { write(ctx, response, keepAlive); }
+        }
+
+        @Override public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("fake elastic server request failed", cause);
+            ctx.close();
+        }
+
+        private void write(ChannelHandlerContext ctx, FullHttpResponse response, boolean keepAlive) {
+            if (keepAlive) { ctx.writeAndFlush(response); }
+            else { ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE); }
+        }
+    }
+}
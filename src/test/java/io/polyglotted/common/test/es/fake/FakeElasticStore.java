@@ -0,0 +1,541 @@
+package io.polyglotted.common.test.es.fake;
+
+import lombok.RequiredArgsConstructor;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.elasticsearch.common.xcontent.XContentType.JSON;
+
+@RequiredArgsConstructor
+final class FakeElasticStore {
+    private static final String DEFAULT_TYPE = "doc";
+    private final Map<String, IndexState> indices = new TreeMap<>();
+    private final Map<String, Map<String, Object>> pipelines = new HashMap<>();
+    private final Map<String, Map<String, Object>> templates = new HashMap<>();
+    private final Map<String, ScrollState> scrolls = new HashMap<>();
+    private final AtomicLong autoIds = new AtomicLong();
+    private final Random random;
+    volatile double bulkItemRejectionRate = 0;
+
+    static final class Reply {
+        final int status;
+        final Object body;
+
+        Reply(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    synchronized Reply handle(String method, String path, Map<String, String> params, byte[] body) {
+        List<String> parts = new ArrayList<>();
+        for (String part : path.split("/")) { if (!part.isEmpty()) { parts.add(part); } }
+        try {
+            return route(method, parts, params, body);
+        } catch (IllegalArgumentException iae) {
+            return error(400, "illegal_argument_exception", iae.getMessage());
+        } catch (RuntimeException ex) {
+            return error(500, "exception", String.valueOf(ex.getMessage()));
+        }
+    }
+
+    private Reply route(String method, List<String> parts, Map<String, String> params, byte[] body) {
+        int size = parts.size();
+        String first = size > 0 ? parts.get(0) : "";
+        String last = size > 0 ? parts.get(size - 1) : "";
+
+        if (size == 0) { return ok(map("name", "fake-node", "cluster_name", "fake-elastic", "version", map("number", "5.6.16"))); }
+        if (size == 2 && "_cluster".equals(first) && "health".equals(last)) { return ok(health()); }
+        if ("_bulk".equals(last)) { return bulk(body, size > 1 ? first : null, size > 2 ? parts.get(1) : DEFAULT_TYPE); }
+        if (size == 2 && "_search".equals(first) && "scroll".equals(last)) {
+            return "DELETE".equals(method) ? clearScroll(params, body) : scroll(params, body);
+        }
+        if ("_msearch".equals(last)) { return multiSearch(body, size > 1 ? first : "_all"); }
+        if ("_search".equals(last)) { return search(size > 1 ? first : "_all", params, json(body)); }
+        if ("_mget".equals(last)) { return multiGet(json(body), size > 1 ? first : null, size > 2 ? parts.get(1) : null); }
+        if (size == 3 && "_ingest".equals(first)) { return namedResource(pipelines, method, last, body); }
+        if (size == 2 && "_template".equals(first)) { return namedResource(templates, method, last, body); }
+        if ("_aliases".equals(last)) { return aliases(size > 1 ? first : "_all"); }
+        if ("_settings".equals(last)) { return settings(size > 1 ? first : "_all"); }
+        if ("_mapping".equals(last) || (size == 3 && "_mapping".equals(parts.get(1)))) {
+            String type = "_mapping".equals(last) ? (size == 3 ? parts.get(1) : null) : last;
+            return "GET".equals(method) ? mapping(first, type) : putMapping(first, type, json(body));
+        }
+        if ("_refresh".equals(last)) { return ok(map("_shards", shards(1))); }
+        if (size == 2 && ("_open".equals(last) || "_close".equals(last))) { return openClose(first, "_open".equals(last)); }
+        if (size == 1) { return index(method, first, body); }
+        if (size == 2 && "POST".equals(method)) { return indexDoc(first, parts.get(1), "fake-" + autoIds.incrementAndGet(), json(body)); }
+        if (size == 3) { return document(method, first, parts.get(1), last, body); }
+        if (size == 4 && "_update".equals(last)) { return update(first, parts.get(1), parts.get(2), json(body)); }
+        return error(400, "illegal_argument_exception", "no handler found for " + method + " /" + String.join("/", parts));
+    }
+
+    private Reply index(String method, String index, byte[] body) {
+        switch (method) {
+            case "HEAD":
+                return new Reply(resolve(index).isEmpty() ? 404 : 200, null);
+            case "PUT":
+                if (indices.containsKey(index)) { return error(400, "index_already_exists_exception", "index [" + index + "] already exists"); }
+                indices.put(index, new IndexState(json(body)));
+                return ok(map("acknowledged", true, "shards_acknowledged", true));
+            case "DELETE":
+                List<String> names = concrete(index);
+                if (names == null) { return indexNotFound(index); }
+                names.forEach(indices::remove);
+                return ok(map("acknowledged", true));
+            default:
+                List<String> resolved = concrete(index);
+                if (resolved == null) { return indexNotFound(index); }
+                Map<String, Object> result = new LinkedHashMap<>();
+                for (String name : resolved) {
+                    IndexState state = indices.get(name);
+                    result.put(name, map("aliases", state.aliasMap(), "mappings", state.mappings, "settings", state.settings(name)));
+                }
+                return ok(result);
+        }
+    }
+
+    private Reply openClose(String expression, boolean open) {
+        List<String> names = concrete(expression);
+        if (names == null) { return indexNotFound(expression); }
+        names.forEach(name -> indices.get(name).open = open);
+        return ok(map("acknowledged", true));
+    }
+
+    private Reply aliases(String expression) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : resolve(expression)) { result.put(name, map("aliases", indices.get(name).aliasMap())); }
+        return ok(result);
+    }
+
+    private Reply settings(String expression) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : resolve(expression)) { result.put(name, map("settings", indices.get(name).settings(name))); }
+        return ok(result);
+    }
+
+    private Reply mapping(String expression, String type) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : resolve(expression)) {
+            Map<String, Object> mappings = indices.get(name).mappings;
+            result.put(name, map("mappings", type == null ? mappings : mappings.containsKey(type) ?
+                map(type, mappings.get(type)) : Collections.emptyMap()));
+        }
+        return ok(result);
+    }
+
+    private Reply putMapping(String expression, String type, Map<String, Object> mapping) {
+        List<String> names = concrete(expression);
+        if (names == null) { return indexNotFound(expression); }
+        names.forEach(name -> indices.get(name).mappings.put(type, mapping.containsKey(type) ? mapping.get(type) : mapping));
+        return ok(map("acknowledged", true));
+    }
+
+    private Reply namedResource(Map<String, Map<String, Object>> resources, String method, String name, byte[] body) {
+        switch (method) {
+            case "PUT":
+            case "POST":
+                resources.put(name, json(body));
+                return ok(map("acknowledged", true));
+            case "DELETE":
+                return resources.remove(name) == null ? error(404, "resource_not_found_exception", name + " missing") : ok(map("acknowledged", true));
+            default:
+                return resources.containsKey(name) ? ok(map(name, resources.get(name))) : new Reply(404, Collections.emptyMap());
+        }
+    }
+
+    private Reply document(String method, String index, String type, String id, byte[] body) {
+        switch (method) {
+            case "PUT":
+            case "POST":
+                return indexDoc(index, type, id, json(body));
+            case "DELETE":
+                return deleteDoc(index, type, id);
+            default:
+                IndexState state = indices.get(index);
+                if (state == null) { return indexNotFound(index); }
+                Map<String, Object> doc = getDoc(state, index, type, id);
+                return "HEAD".equals(method) ? new Reply((Boolean) doc.get("found") ? 200 : 404, null) : new Reply((Boolean) doc.get("found") ? 200 : 404, doc);
+        }
+    }
+
+    private Reply indexDoc(String index, String type, String id, Map<String, Object> source) {
+        IndexState state = indices.computeIfAbsent(index, name -> new IndexState(Collections.emptyMap()));
+        Document previous = state.docs.get(type + "#" + id);
+        long version = previous == null ? 1 : previous.version + 1;
+        state.docs.put(type + "#" + id, new Document(type, id, version, source));
+        Map<String, Object> result = docHeader(index, type, id);
+        result.put("_version", version);
+        result.put("result", previous == null ? "created" : "updated");
+        result.put("_shards", shards(2));
+        result.put("created", previous == null);
+        return new Reply(previous == null ? 201 : 200, result);
+    }
+
+    private Reply deleteDoc(String index, String type, String id) {
+        IndexState state = indices.get(index);
+        if (state == null) { return indexNotFound(index); }
+        Document removed = state.docs.remove(type + "#" + id);
+        Map<String, Object> result = docHeader(index, type, id);
+        result.put("found", removed != null);
+        result.put("_version", removed == null ? 1 : removed.version + 1);
+        result.put("result", removed == null ? "not_found" : "deleted");
+        result.put("_shards", shards(2));
+        return new Reply(removed == null ? 404 : 200, result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Reply update(String index, String type, String id, Map<String, Object> request) {
+        IndexState state = indices.get(index);
+        Document existing = state == null ? null : state.docs.get(type + "#" + id);
+        Map<String, Object> doc = (Map<String, Object>) request.get("doc");
+        Map<String, Object> upsert = (Map<String, Object>) request.get("upsert");
+        if (existing == null && upsert == null && !Boolean.TRUE.equals(request.get("doc_as_upsert"))) {
+            return error(404, "document_missing_exception", "[" + type + "][" + id + "]: document missing");
+        }
+        Map<String, Object> source = new LinkedHashMap<>(existing == null ? (upsert == null ? doc : upsert) : existing.source);
+        if (existing != null && doc != null) { source.putAll(doc); }
+        Reply reply = indexDoc(index, type, id, source);
+        ((Map<String, Object>) reply.body).remove("created");
+        return new Reply(reply.status, reply.body);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Reply multiGet(Map<String, Object> request, String defaultIndex, String defaultType) {
+        List<Object> docs = new ArrayList<>();
+        List<Object> items = request.containsKey("docs") ? (List<Object>) request.get("docs") : new ArrayList<>();
+        if (request.containsKey("ids")) { for (Object id : (List<Object>) request.get("ids")) { items.add(map("_id", id)); } }
+        for (Object item : items) {
+            Map<String, Object> spec = (Map<String, Object>) item;
+            String index = (String) spec.getOrDefault("_index", defaultIndex);
+            String type = spec.containsKey("_type") ? String.valueOf(spec.get("_type")) : defaultType;
+            String id = String.valueOf(spec.get("_id"));
+            IndexState state = indices.get(index);
+            if (state == null) {
+                Map<String, Object> failure = docHeader(index, type, id);
+                failure.put("error", errorBody("index_not_found_exception", "no such index"));
+                docs.add(failure);
+            }
+            else { docs.add(getDoc(state, index, type, id)); }
+        }
+        return ok(map("docs", docs));
+    }
+
+    private Map<String, Object> getDoc(IndexState state, String index, String type, String id) {
+        Document doc = (type == null || "_all".equals(type)) ? anyType(state, id) : state.docs.get(type + "#" + id);
+        Map<String, Object> result = docHeader(index, doc != null ? doc.type : type, id);
+        if (doc != null) { result.put("_version", doc.version); }
+        result.put("found", doc != null);
+        if (doc != null) { result.put("_source", doc.source); }
+        return result;
+    }
+
+    private static Document anyType(IndexState state, String id) {
+        for (Document doc : state.docs.values()) { if (doc.id.equals(id)) { return doc; } }
+        return null;
+    }
+
+    private Reply bulk(byte[] body, String defaultIndex, String defaultType) {
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+        List<Object> items = new ArrayList<>();
+        boolean errors = false;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].trim().isEmpty()) { continue; }
+            Map<String, Object> action = json(lines[i]);
+            String op = action.keySet().iterator().next();
+            @SuppressWarnings("unchecked") Map<String, Object> meta = (Map<String, Object>) action.get(op);
+            String index = (String) meta.getOrDefault("_index", defaultIndex);
+            String type = (String) meta.getOrDefault("_type", defaultType);
+            String id = meta.containsKey("_id") ? String.valueOf(meta.get("_id")) : "fake-" + autoIds.incrementAndGet();
+            Map<String, Object> source = "delete".equals(op) ? null : json(lines[++i]);
+
+            Map<String, Object> item;
+            if (random.nextDouble() < bulkItemRejectionRate) {
+                item = docHeader(index, type, id);
+                item.put("status", 429);
+                item.put("error", errorBody("es_rejected_execution_exception", "rejected execution of bulk item"));
+            }
+            else {
+                Reply reply = "delete".equals(op) ? deleteDoc(index, type, id) : "update".equals(op) ? update(index, type, id, source) :
+                    ("create".equals(op) && indices.containsKey(index) && indices.get(index).docs.containsKey(type + "#" + id)) ?
+                        error(409, "version_conflict_engine_exception", "[" + type + "][" + id + "]: document already exists") :
+                        indexDoc(index, type, id, source);
+                Map<String, Object> replyBody = castMap(reply.body);
+                item = replyBody.containsKey("error") ? docHeader(index, type, id) : replyBody;
+                if (replyBody.containsKey("error")) { item.put("error", replyBody.get("error")); }
+                item.put("status", reply.status);
+            }
+            errors |= item.containsKey("error");
+            items.add(map(op, item));
+        }
+        return ok(map("took", 1, "errors", errors, "items", items));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Reply search(String expression, Map<String, String> params, Map<String, Object> request) {
+        List<String> names = concrete(expression);
+        if (names == null) { return indexNotFound(expression); }
+        int from = intParam(params, request, "from", 0);
+        int size = intParam(params, request, "size", 10);
+        boolean sorted = request.containsKey("sort");
+        List<Object> searchAfter = (List<Object>) request.get("search_after");
+        Map<String, Object> slice = (Map<String, Object>) request.get("slice");
+
+        List<Map<String, Object>> hits = new ArrayList<>();
+        for (String name : names) {
+            IndexState state = indices.get(name);
+            if (!state.open) { continue; }
+            for (Document doc : state.docs.values()) {
+                if (!matches((Map<String, Object>) request.get("query"), doc)) { continue; }
+                if (slice != null && Math.floorMod(doc.id.hashCode(), ((Number) slice.get("max")).intValue()) != ((Number) slice.get("id")).intValue()) { continue; }
+                Map<String, Object> hit = docHeader(name, doc.type, doc.id);
+                hit.put("_score", 1.0);
+                hit.put("_source", doc.source);
+                if (sorted) { hit.put("sort", Collections.singletonList(doc.id)); }
+                hits.add(hit);
+            }
+        }
+        if (sorted) { hits.sort((a, b) -> ((String) a.get("_id")).compareTo((String) b.get("_id"))); }
+        int total = hits.size();
+        if (searchAfter != null && !searchAfter.isEmpty()) {
+            String after = String.valueOf(searchAfter.get(searchAfter.size() - 1));
+            hits.removeIf(hit -> ((String) hit.get("_id")).compareTo(after) <= 0);
+        }
+
+        String keepAlive = params.get("scroll");
+        if (keepAlive != null) {
+            String scrollId = Base64.getUrlEncoder().withoutPadding().encodeToString(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+            ScrollState scroll = new ScrollState(hits, size);
+            scrolls.put(scrollId, scroll);
+            return ok(searchResponse(scrollId, scroll.next(), total));
+        }
+        return ok(searchResponse(null, hits.subList(Math.min(from, hits.size()), Math.min(from + size, hits.size())), total));
+    }
+
+    private Reply scroll(Map<String, String> params, byte[] body) {
+        String scrollId = params.containsKey("scroll_id") ? params.get("scroll_id") : (String) json(body).get("scroll_id");
+        ScrollState scroll = scrolls.get(scrollId);
+        if (scroll == null) { return error(404, "search_context_missing_exception", "No search context found for id [" + scrollId + "]"); }
+        return ok(searchResponse(scrollId, scroll.next(), scroll.hits.size()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Reply clearScroll(Map<String, String> params, byte[] body) {
+        List<Object> ids = params.containsKey("scroll_id") ? Arrays.asList((Object[]) params.get("scroll_id").split(",")) :
+            (List<Object>) json(body).getOrDefault("scroll_id", Collections.emptyList());
+        int freed = 0;
+        for (Object id : ids) { if (scrolls.remove(String.valueOf(id)) != null) { freed++; } }
+        return ok(map("succeeded", true, "num_freed", freed));
+    }
+
+    private Reply multiSearch(byte[] body, String defaultIndex) {
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+        List<Object> responses = new ArrayList<>();
+        for (int i = 0; i + 1 < lines.length; i += 2) {
+            Map<String, Object> header = json(lines[i]);
+            Object index = header.getOrDefault("index", defaultIndex);
+            String expression = index instanceof List ? String.join(",", castList(index)) : String.valueOf(index);
+            Reply reply = search(expression, Collections.emptyMap(), json(lines[i + 1]));
+            Map<String, Object> response = castMap(reply.body);
+            response.put("status", reply.status);
+            responses.add(response);
+        }
+        return ok(map("responses", responses));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matches(Map<String, Object> query, Document doc) {
+        if (query == null || query.containsKey("match_all")) { return true; }
+        if (query.containsKey("ids")) { return ((List<Object>) ((Map<String, Object>) query.get("ids")).get("values")).contains(doc.id); }
+        for (String kind : Arrays.asList("term", "match")) {
+            if (query.containsKey(kind)) {
+                Map.Entry<String, Object> entry = ((Map<String, Object>) query.get(kind)).entrySet().iterator().next();
+                Object expected = entry.getValue() instanceof Map ? first((Map<String, Object>) entry.getValue(), "value", "query") : entry.getValue();
+                return Objects.equals(String.valueOf(doc.source.get(entry.getKey())), String.valueOf(expected));
+            }
+        }
+        throw new IllegalArgumentException("fake search only supports match_all, ids, term and match queries");
+    }
+
+    private Map<String, Object> searchResponse(String scrollId, List<Map<String, Object>> hits, int total) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (scrollId != null) { result.put("_scroll_id", scrollId); }
+        result.put("took", 1);
+        result.put("timed_out", false);
+        result.put("_shards", map("total", 1, "successful", 1, "skipped", 0, "failed", 0));
+        result.put("hits", map("total", total, "max_score", total == 0 ? null : 1.0, "hits", hits));
+        return result;
+    }
+
+    private Map<String, Object> health() {
+        int shards = 0;
+        for (IndexState state : indices.values()) { shards += state.shards(); }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cluster_name", "fake-elastic");
+        result.put("status", "green");
+        result.put("timed_out", false);
+        result.put("number_of_nodes", 1);
+        result.put("number_of_data_nodes", 1);
+        result.put("active_primary_shards", shards);
+        result.put("active_shards", shards);
+        result.put("relocating_shards", 0);
+        result.put("initializing_shards", 0);
+        result.put("unassigned_shards", 0);
+        result.put("delayed_unassigned_shards", 0);
+        result.put("number_of_pending_tasks", 0);
+        result.put("number_of_in_flight_fetch", 0);
+        result.put("task_max_waiting_in_queue_millis", 0);
+        result.put("active_shards_percent_as_number", 100.0);
+        return result;
+    }
+
+    private List<String> resolve(String expression) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String part : expression.split(",")) {
+            if ("_all".equals(part) || "*".equals(part)) { result.addAll(indices.keySet()); }
+            else if (part.endsWith("*")) {
+                String prefix = part.substring(0, part.length() - 1);
+                indices.keySet().stream().filter(name -> name.startsWith(prefix)).forEach(result::add);
+            }
+            else if (indices.containsKey(part)) { result.add(part); }
+            else { indices.forEach((name, state) -> { if (state.aliases.contains(part)) { result.add(name); } }); }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private List<String> concrete(String expression) {
+        List<String> result = resolve(expression);
+        boolean wildcard = expression.contains("*") || expression.contains("_all");
+        return result.isEmpty() && !wildcard ? null : result;
+    }
+
+    private static int intParam(Map<String, String> params, Map<String, Object> request, String name, int defaultValue) {
+        if (params.containsKey(name)) { return Integer.parseInt(params.get(name)); }
+        return request.containsKey(name) ? ((Number) request.get(name)).intValue() : defaultValue;
+    }
+
+    private static Map<String, Object> docHeader(String index, String type, String id) { return map("_index", index, "_type", type, "_id", id); }
+
+    private static Map<String, Object> shards(int total) { return map("total", total, "successful", 1, "failed", 0); }
+
+    private static Reply ok(Object body) { return new Reply(200, body); }
+
+    private static Reply indexNotFound(String index) {
+        return error(404, "index_not_found_exception", "no such index [" + index + "]");
+    }
+
+    static Reply error(int status, String type, String reason) {
+        Map<String, Object> error = errorBody(type, reason);
+        error.put("root_cause", Collections.singletonList(errorBody(type, reason)));
+        return new Reply(status, map("error", error, "status", status));
+    }
+
+    private static Map<String, Object> errorBody(String type, String reason) { return map("type", type, "reason", reason); }
+
+    private static Object first(Map<String, Object> values, String... keys) {
+        for (String key : keys) { if (values.containsKey(key)) { return values.get(key); } }
+        return null;
+    }
+
+    static Map<String, Object> json(byte[] body) {
+        return body == null || body.length == 0 ? new LinkedHashMap<>() : XContentHelper.convertToMap(new BytesArray(body), true, JSON).v2();
+    }
+
+    private static Map<String, Object> json(String line) { return json(line.getBytes(StandardCharsets.UTF_8)); }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object value) { return (Map<String, Object>) value; }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> castList(Object value) { return (List<String>) value; }
+
+    static Map<String, Object> map(Object... keyValues) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) { result.put((String) keyValues[i], keyValues[i + 1]); }
+        return result;
+    }
+
+    private static final class Document {
+        private final String type;
+        private final String id;
+        private final long version;
+        private final Map<String, Object> source;
+
+        Document(String type, String id, long version, Map<String, Object> source) {
+            this.type = type;
+            this.id = id;
+            this.version = version;
+            this.source = source;
+        }
+    }
+
+    private static final class IndexState {
+        private final Map<String, Object> settings;
+        private final Map<String, Object> mappings;
+        private final Set<String> aliases = new LinkedHashSet<>();
+        private final Map<String, Document> docs = new LinkedHashMap<>();
+        private final String uuid = UUID.randomUUID().toString();
+        private boolean open = true;
+
+        @SuppressWarnings("unchecked")
+        IndexState(Map<String, Object> body) {
+            Map<String, Object> requested = (Map<String, Object>) body.getOrDefault("settings", Collections.emptyMap());
+            this.settings = new TreeMap<>(requested.containsKey("index") ? (Map<String, Object>) requested.get("index") : requested);
+            this.mappings = new LinkedHashMap<>((Map<String, Object>) body.getOrDefault("mappings", Collections.emptyMap()));
+            this.aliases.addAll(((Map<String, Object>) body.getOrDefault("aliases", Collections.emptyMap())).keySet());
+        }
+
+        int shards() { return Integer.parseInt(String.valueOf(settings.getOrDefault("number_of_shards", "5"))); }
+
+        Map<String, Object> aliasMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            aliases.forEach(alias -> result.put(alias, Collections.emptyMap()));
+            return result;
+        }
+
+        Map<String, Object> settings(String name) {
+            Map<String, Object> index = new TreeMap<>();
+            settings.forEach((key, value) -> index.put(key, String.valueOf(value)));
+            index.putIfAbsent("number_of_shards", "5");
+            index.putIfAbsent("number_of_replicas", "1");
+            index.put("provided_name", name);
+            index.put("uuid", uuid);
+            index.put("version", map("created", "5061699"));
+            return map("index", index);
+        }
+    }
+
+    private static final class ScrollState {
+        private final List<Map<String, Object>> hits;
+        private final int size;
+        private int position = 0;
+
+        ScrollState(List<Map<String, Object>> hits, int size) {
+            this.hits = hits;
+            this.size = size;
+        }
+
+        List<Map<String, Object>> next() {
+            List<Map<String, Object>> page = hits.subList(Math.min(position, hits.size()), Math.min(position + size, hits.size()));
+            position += size;
+            return page;
+        }
+    }
+}